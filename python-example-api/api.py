@@ -2,9 +2,10 @@ import os
 import csv
 import json
 import base64
+import hashlib
 import logging
 
-from itertools import permutations
+from itertools import permutations, product
 from inspect import signature
 
 from bottle import Bottle, route, run, response, request
@@ -16,6 +17,7 @@ app.install(cors_plugin('*'))
 
 CSV_DIRECTORY = 'data'
 MAX_SPLIT_SIZE = 5
+TABLES_PAGE_SIZE = 1000
 
 FUNCTIONS_SCHEMA_NAME = 'virtual'
 FUNCTIONS = {
@@ -72,27 +74,28 @@ def list_schemas():
     response.content_type = 'application/json'
     return json.dumps(schemas)
 
+def table_names(schema):
+    if schema == FUNCTIONS_SCHEMA_NAME:
+        return list(FUNCTIONS)
+    schema_path = os.path.join(CSV_DIRECTORY, schema)
+    return sorted(name.split('.')[0] for name in os.listdir(schema_path) if name.endswith('.csv'))
+
 @app.route('/schemas/<schema>/tables', method='GET')
 def list_tables(schema):
-    if schema == FUNCTIONS_SCHEMA_NAME:
-        response.content_type = 'application/json'
-        tables = []
-        for function_name in FUNCTIONS:
-            tables.append({'schema': schema, 'table': function_name})
-        return json.dumps(tables)
-    else:
-        schema_path = os.path.join(CSV_DIRECTORY, schema)
-        tables = [{'schema': schema, 'table': name.split('.')[0]} for name in os.listdir(schema_path) if name.endswith('.csv')]
-        response.content_type = 'application/json'
-        return json.dumps(tables)
+    # Large schemas are listed in pages, the token is the offset of the next page
+    start = int(request.query.get('nextToken') or 0)
+    names = table_names(schema)
+    if start + TABLES_PAGE_SIZE < len(names):
+        response.set_header('X-Next-Token', str(start + TABLES_PAGE_SIZE))
+    tables = [{'schema': schema, 'table': name} for name in names[start:start + TABLES_PAGE_SIZE]]
+    response.content_type = 'application/json'
+    return json.dumps(tables)
 
-@app.route('/schemas/<schema>/tables/<table>', method='GET')
-def get_table_metadata(schema, table):
+def table_metadata(schema, table):
     if schema == FUNCTIONS_SCHEMA_NAME:
         function = FUNCTIONS.get(table)
         if function is None:
-            response.status = 404
-            return
+            return None
 
         signature_params = list(signature(function).parameters.keys())
         columns = [{'name': param, 'type': 'varchar'} for param in signature_params]
@@ -101,6 +104,8 @@ def get_table_metadata(schema, table):
             'schemaTableName': {'schema': schema, 'table': table},
             'columns': columns,
             'comment': None,
+            # Many argument tuples can be sent at once to the index rows endpoint
+            'indexableKeys': [signature_params],
         }
     else:
         file_path = os.path.join(CSV_DIRECTORY, schema, f'{table}.csv')
@@ -111,8 +116,30 @@ def get_table_metadata(schema, table):
             'columns': columns,
             'comment': None,
         }
+    return metadata
+
+@app.route('/schemas/<schema>/tables/<table>', method='GET')
+def get_table_metadata(schema, table):
+    metadata = table_metadata(schema, table)
+    if metadata is None:
+        response.status = 404
+        return
+
+    # Lets the connector revalidate the cached metadata without downloading it again
+    body = json.dumps(metadata)
+    etag = '"%s"' % hashlib.sha256(body.encode('utf-8')).hexdigest()
+    response.set_header('ETag', etag)
+    if request.get_header('If-None-Match') == etag:
+        response.status = 304
+        return
+    response.content_type = 'application/json'
+    return body
+
+@app.route('/schemas/<schema>/metadata', method='GET')
+def list_table_metadata(schema):
+    # The metadata of all the tables at once, for information_schema queries
     response.content_type = 'application/json'
-    return json.dumps(metadata)
+    return json.dumps([table_metadata(schema, table) for table in table_names(schema)])
 
 @app.route('/schemas/<schema>/tables/<table>/splits', method='POST')
 def get_splits(schema, table):
@@ -133,6 +160,11 @@ def get_splits(schema, table):
         end = min(start + max_split_size, len(data))
         splits.append(f"{start}-{end}")
 
+    # A single split is enough to produce the rows of a small limit
+    limit = request.json.get('limit')
+    if limit is not None and splits:
+        splits = splits[:max(1, -(-limit // max_split_size))]
+
     split_batch = {'splits': splits}
     response.content_type = 'application/json'
     return json.dumps(split_batch)
@@ -178,6 +210,46 @@ def get_rows_range(split_id, next_token, data):
 
     return rows, next_token
 
+def decode_column_block(block):
+    data = block['varcharData']
+    encoded_data = base64.b64decode(data['bytes'])
+    values = []
+    offset = 0
+    for is_null, size in zip(data['nulls'], data['sizes']):
+        values.append(None if is_null else encoded_data[offset:offset + size].decode('utf-8'))
+        offset += size
+    return values
+
+def call_function(function, desired_columns, arguments, null_columns=()):
+    """Calls the function once per tuple of arguments, the result rows are tagged with their arguments."""
+    method_kwargs_names = list(signature(function).parameters.keys())
+
+    columns = {column: [] for column in desired_columns}
+    row_count = 0
+    for method_kwargs in arguments:
+        result = function(**{param: method_kwargs[param] for param in method_kwargs_names})
+        # Arguments can also be matched against the result column
+        if method_kwargs.get('result') is not None:
+            result = [value for value in result if value == method_kwargs['result']]
+        row_count += len(result)
+        for column in desired_columns:
+            if column in method_kwargs_names:
+                columns[column].extend([method_kwargs[column]] * len(result))
+            elif column == 'result':
+                columns[column].extend(result)
+            else:
+                raise ValueError(f'Unknown column: {column}')
+
+    column_blocks = []
+    for column in desired_columns:
+        if column in null_columns:
+            column_blocks.append(construct_null_column_block(row_count))
+        else:
+            column_blocks.append(construct_column_block(columns[column]))
+
+    response.content_type = 'application/json'
+    return json.dumps({'columnBlocks': column_blocks, 'rowCount': row_count})
+
 def handle_function_call(table, request_json):
     function = FUNCTIONS.get(table)
     if function is None:
@@ -188,37 +260,26 @@ def handle_function_call(table, request_json):
     desired_columns = request_json.get('desiredColumns')
     assert desired_columns == method_kwargs_names + ['result']
 
-    # Extract the method parameters from the input
-    method_kwargs = {}
-    null_allowed = {}
+    # Extract the method parameters from the input, an IN list calls the function for each value
+    method_kwargs_values = []
+    null_columns = set()
     for param in method_kwargs_names:
         if param not in request_json['outputConstraint']['domains']:
             raise ValueError(f'Missing parameter: {param}')
-        param_data = request_json['outputConstraint']['domains'][param]['valueSet']['equatable']['values'][0]['varcharData']
-        param_value = base64.b64decode(param_data['bytes']).decode('utf-8')
-        method_kwargs[param] = param_value
-        null_allowed[param] = request_json['outputConstraint']['domains'][param]['nullAllowed']
-
-    # Call the function with the extracted parameters
-    result = function(**method_kwargs)
-    row_count = len(result)
-
-    column_blocks = []
-    for column in desired_columns:
-        if column in method_kwargs_names:
-            if null_allowed[column]:
-                column_blocks.append(construct_null_column_block(row_count))
-                continue
-            else:
-                column_data = [method_kwargs[column]] * row_count
-        elif column == 'result':
-            column_data = result
-        else:
-            raise ValueError(f'Unknown column: {column}')
-        column_blocks.append(construct_column_block(column_data))
-
-    response.content_type = 'application/json'
-    return json.dumps({'columnBlocks': column_blocks, 'rowCount': row_count})
+        domain = request_json['outputConstraint']['domains'][param]
+        if 'equatable' not in domain['valueSet']:
+            # Ranges, including the span sent for IN lists longer than max_in_list_size, can't be
+            # enumerated; many arguments go through the index rows endpoint with a join instead
+            response.status = 400
+            response.content_type = 'application/json'
+            return json.dumps({'message': f'Parameter {param} must be equal to a value or a list of values, '
+                                          f'join on it to call {table} for many arguments'})
+        method_kwargs_values.append(decode_column_block(domain['valueSet']['equatable']['values'][0]))
+        if domain['nullAllowed']:
+            null_columns.add(param)
+
+    arguments = [dict(zip(method_kwargs_names, values)) for values in product(*method_kwargs_values)]
+    return call_function(function, desired_columns, arguments, null_columns)
 
 @app.route('/schemas/<schema>/tables/<table>/splits/<split_id>/rows', method='POST')
 def get_rows(schema, table, split_id):
@@ -240,6 +301,11 @@ def get_rows(schema, table, split_id):
     next_token = request.json.get('nextToken')
     rows, next_token = get_rows_range(split_id, next_token, data)
 
+    limit = request.json.get('limit')
+    if limit is not None and len(rows) >= limit:
+        rows = rows[:limit]
+        next_token = None
+
     column_blocks = []
     for i in column_indices:
         column_data = [row[i] for row in rows]
@@ -250,5 +316,20 @@ def get_rows(schema, table, split_id):
     response.content_type = 'application/json'
     return json.dumps(page_result)
 
+@app.route('/schemas/<schema>/tables/<table>/index/rows', method='POST')
+def get_index_rows(schema, table):
+    logging.info(f'Index rows request: {request.json}')
+
+    # Only virtual tables are indexable, the argument tuples are the lookup keys
+    function = FUNCTIONS.get(table) if schema == FUNCTIONS_SCHEMA_NAME else None
+    if function is None:
+        response.status = 404
+        return
+
+    key_columns = request.json['keyColumns']
+    keys = [decode_column_block(block) for block in request.json['keys']]
+    arguments = [dict(zip(key_columns, key)) for key in zip(*keys)]
+    return call_function(function, request.json.get('desiredColumns'), arguments)
+
 if __name__ == '__main__':
     run(app, host='localhost', port=8080)
\ No newline at end of file
@@ -13,42 +13,85 @@
  */
 package com.facebok.presto.connector.openapi;
 
+import com.facebok.presto.connector.openapi.util.SingleFlight;
+import com.facebook.airlift.concurrent.Threads;
 import com.facebook.airlift.log.Logger;
 import com.facebook.presto.connector.openapi.clientv3.ApiClient;
 import com.facebook.presto.connector.openapi.clientv3.ApiException;
-import com.facebook.presto.connector.openapi.clientv3.Configuration;
+import com.facebook.presto.connector.openapi.clientv3.ApiResponse;
 import com.facebook.presto.connector.openapi.clientv3.api.DefaultApi;
 import com.facebook.presto.connector.openapi.clientv3.auth.ApiKeyAuth;
 import com.facebook.presto.connector.openapi.clientv3.model.PageResult;
 import com.facebook.presto.connector.openapi.clientv3.model.SchemaTable;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableChangesPostRequest;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableIndexRowsPostRequest;
 import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsPostRequest;
 import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsSplitRowsPostRequest;
 import com.facebook.presto.connector.openapi.clientv3.model.Splits;
+import com.facebook.presto.connector.openapi.clientv3.model.TableChanges;
 import com.facebook.presto.connector.openapi.clientv3.model.TableMetadata;
-import com.facebook.presto.connector.openapi.clientv3.model.TupleDomain;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
 
 import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.util.Objects.requireNonNull;
 
 public class DefaultOpenAPIService
         implements OpenAPIService
 {
     private static final Logger log = Logger.get(DefaultOpenAPIService.class);
+    private static final String NEXT_TOKEN_HEADER = "X-Next-Token";
+    private static final String ENTITY_TAG_HEADER = "ETag";
 
-    private final DefaultApi defaultApi;
+    private final OpenAPIReplicaSelector replicaSelector;
+    private final Map<OpenAPIReplica, DefaultApi> replicaApis;
     private final URI baseURI;
+    private final ExecutorService listTablesExecutor;
+    private final SingleFlight<RowsKey, PageResult> pageRowsSingleFlight = new SingleFlight<>();
 
-    @Inject
     DefaultOpenAPIService(OpenAPIConnectorConfig config)
     {
-        ApiClient defaultClient = Configuration.getDefaultApiClient();
-        defaultClient.setBasePath(config.getBaseUrl());
-        log.info("Using base URL: %s", config.getBaseUrl());
+        this(config, new OpenAPIReplicaSelector(config));
+    }
+
+    @Inject
+    DefaultOpenAPIService(OpenAPIConnectorConfig config, OpenAPIReplicaSelector replicaSelector)
+    {
+        this.replicaSelector = requireNonNull(replicaSelector);
+
+        ImmutableMap.Builder<OpenAPIReplica, DefaultApi> replicaApis = ImmutableMap.builder();
+        for (OpenAPIReplica replica : replicaSelector.getReplicas()) {
+            replicaApis.put(replica, new DefaultApi(newApiClient(config, replica.getBaseUrl())));
+        }
+        this.replicaApis = replicaApis.build();
+        this.baseURI = replicaSelector.getReplicas().get(0).getUri();
+        this.listTablesExecutor = Executors.newFixedThreadPool(config.getListTablesThreads(),
+                Threads.daemonThreadsNamed("list-tables-%s"));
+    }
+
+    private static ApiClient newApiClient(OpenAPIConnectorConfig config, String baseUrl)
+    {
+        ApiClient defaultClient = new ApiClient();
+        defaultClient.setBasePath(baseUrl);
+        log.info("Using base URL: %s", baseUrl);
 
         // Set up authentication if needed (bearer token, basic auth or API key)
         if (config.getBearerToken() != null) {
@@ -70,9 +113,35 @@ public class DefaultOpenAPIService
         defaultClient.setConnectTimeout(config.getHttpClientConnectTimeoutMs());
         defaultClient.setReadTimeout(config.getHttpClientReadTimeoutMs());
         defaultClient.setWriteTimeout(config.getHttpClientWriteTimeoutMs());
+        return defaultClient;
+    }
 
-        this.baseURI = URI.create(config.getBaseUrl());
-        this.defaultApi = new DefaultApi(defaultClient);
+    /**
+     * Sends the request to the replica picked by the replica selector and records
+     * the outcome so that slow or failing replicas receive less traffic.
+     */
+    private <T> T invoke(Function<DefaultApi, T> request)
+    {
+        OpenAPIReplica replica = replicaSelector.select();
+        long start = System.nanoTime();
+        replica.requestStarted();
+        boolean failed = false;
+        try {
+            return request.apply(replicaApis.get(replica));
+        }
+        catch (ApiException e) {
+            failed = isReplicaFailure(e);
+            throw e;
+        }
+        finally {
+            replica.requestFinished(System.nanoTime() - start, failed);
+        }
+    }
+
+    private static boolean isReplicaFailure(ApiException e)
+    {
+        // Status code zero means that no response was received at all (e.g. connection refused)
+        return e.getCode() == 0 || e.getCode() == 429 || e.getCode() >= 500;
     }
 
     @Override
@@ -85,7 +154,7 @@ public class DefaultOpenAPIService
     public List<String> listSchemaNames()
     {
         try {
-            List<String> schemas = defaultApi.schemasGet();
+            List<String> schemas = invoke(DefaultApi::schemasGet);
             return ImmutableList.copyOf(schemas);
         }
         catch (ApiException e) {
@@ -97,45 +166,117 @@ public class DefaultOpenAPIService
     @Override
     public List<SchemaTable> listTables(@Nullable String schemaOrNull)
     {
-        List<String> schemas = new ArrayList<>();
-        if (schemaOrNull == null) {
-            schemas.addAll(listSchemaNames());
+        if (schemaOrNull != null) {
+            return listSchemaTables(schemaOrNull);
+        }
+
+        // Each schema is listed page by page, many schemas at a time
+        List<Future<List<SchemaTable>>> futures = new ArrayList<>();
+        for (String schemaName : listSchemaNames()) {
+            futures.add(listTablesExecutor.submit(() -> listSchemaTables(schemaName)));
+        }
+        ImmutableList.Builder<SchemaTable> result = ImmutableList.builder();
+        try {
+            for (Future<List<SchemaTable>> future : futures) {
+                result.addAll(future.get());
+            }
+        }
+        catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
         }
-        else {
-            schemas.add(schemaOrNull);
+        catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
         }
-        List<SchemaTable> result = new ArrayList<>();
-        for (String schemaName : schemas) {
+        return result.build();
+    }
+
+    private List<SchemaTable> listSchemaTables(String schemaName)
+    {
+        ImmutableList.Builder<SchemaTable> result = ImmutableList.builder();
+        String nextToken = null;
+        do {
+            String token = nextToken;
+            ApiResponse<List<SchemaTable>> response;
             try {
-                result.addAll(defaultApi.schemasSchemaTablesGet(schemaName));
+                response = invoke(api -> api.schemasSchemaTablesGetWithHttpInfo(schemaName, token));
             }
             catch (ApiException e) {
                 log.error(e, "Failed to list tables for schema: %s", schemaName);
                 throw new OpenAPIServiceException(e);
             }
+            result.addAll(response.getData());
+            nextToken = getHeader(response.getHeaders(), NEXT_TOKEN_HEADER);
+        }
+        while (nextToken != null);
+        return result.build();
+    }
+
+    @Nullable
+    private static String getHeader(Map<String, List<String>> headers, String name)
+    {
+        // Header names are case insensitive, and normalized to lower case by the HTTP client
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name) && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
         }
-        return ImmutableList.copyOf(result);
+        return null;
     }
 
     @Override
     public TableMetadata getTableMetadata(SchemaTable schemaTable)
     {
         try {
-            return defaultApi.schemasSchemaTablesTableGet(schemaTable.getSchema(), schemaTable.getTable());
+            return invoke(api -> api.schemasSchemaTablesTableGet(schemaTable.getSchema(), schemaTable.getTable(), null));
+        }
+        catch (ApiException e) {
+            log.error(e, "Failed to get metadata for table: %s.%s", schemaTable.getSchema(), schemaTable.getTable());
+            throw new OpenAPIServiceException(e);
+        }
+    }
+
+    @Override
+    public Optional<TaggedTableMetadata> getTableMetadata(SchemaTable schemaTable, @Nullable String entityTag)
+    {
+        ApiResponse<TableMetadata> response;
+        try {
+            response = invoke(api -> api.schemasSchemaTablesTableGetWithHttpInfo(schemaTable.getSchema(), schemaTable.getTable(), entityTag));
         }
         catch (ApiException e) {
+            if (e.getCode() == 304) {
+                return Optional.empty();
+            }
             log.error(e, "Failed to get metadata for table: %s.%s", schemaTable.getSchema(), schemaTable.getTable());
             throw new OpenAPIServiceException(e);
         }
+        return Optional.of(new TaggedTableMetadata(response.getData(), getHeader(response.getHeaders(), ENTITY_TAG_HEADER)));
+    }
+
+    @Override
+    public List<TableMetadata> listTableMetadata(String schemaName)
+    {
+        try {
+            return invoke(api -> api.schemasSchemaMetadataGet(schemaName));
+        }
+        catch (ApiException e) {
+            if (e.getCode() != 404) {
+                log.error(e, "Failed to get metadata for the tables of schema: %s", schemaName);
+            }
+            throw new OpenAPIServiceException(e);
+        }
     }
 
     @Override
-    public Splits getSplits(String schemaName, String tableName, int maxSplitCount)
+    public Splits getSplits(String schemaName,
+                            String tableName,
+                            SchemasSchemaTablesTableSplitsPostRequest request)
     {
-        SchemasSchemaTablesTableSplitsPostRequest requestBody = new SchemasSchemaTablesTableSplitsPostRequest()
-                .maxSplitCount(maxSplitCount);
         try {
-            return defaultApi.schemasSchemaTablesTableSplitsPost(schemaName, tableName, requestBody);
+            return invoke(api -> api.schemasSchemaTablesTableSplitsPost(schemaName, tableName, request));
         }
         catch (ApiException e) {
             log.error(e, "Failed to get splits for table: %s.%s", schemaName, tableName);
@@ -147,29 +288,103 @@ public class DefaultOpenAPIService
     public PageResult getPageRows(String schemaName,
                                   String tableName,
                                   String split,
-                                  List<String> desiredColumns,
-                                  TupleDomain outputConstraint,
-                                  @Nullable String nextToken)
+                                  SchemasSchemaTablesTableSplitsSplitRowsPostRequest request)
     {
-        SchemasSchemaTablesTableSplitsSplitRowsPostRequest requestBody = new SchemasSchemaTablesTableSplitsSplitRowsPostRequest()
-                .desiredColumns(desiredColumns)
-                .outputConstraint(outputConstraint)
-                .nextToken(nextToken);
+        // Identical concurrent scans, e.g. from the same dashboard, share a single response
+        RowsKey key = new RowsKey(schemaName, tableName, split, request);
+        return pageRowsSingleFlight.execute(key, () -> {
+            try {
+                return invoke(api -> api.schemasSchemaTablesTableSplitsSplitRowsPost(schemaName,
+                        tableName,
+                        split,
+                        request));
+            }
+            catch (ApiException e) {
+                log.error(e, "Failed to get rows for table: %s.%s", schemaName, tableName);
+                throw new OpenAPIServiceException(e);
+            }
+        });
+    }
+
+    @Override
+    public PageResult getIndexRows(String schemaName,
+                                   String tableName,
+                                   SchemasSchemaTablesTableIndexRowsPostRequest request)
+    {
+        try {
+            return invoke(api -> api.schemasSchemaTablesTableIndexRowsPost(schemaName, tableName, request));
+        }
+        catch (ApiException e) {
+            log.error(e, "Failed to look up rows for table: %s.%s", schemaName, tableName);
+            throw new OpenAPIServiceException(e);
+        }
+    }
 
+    @Override
+    public TableChanges getTableChanges(String schemaName,
+                                        String tableName,
+                                        SchemasSchemaTablesTableChangesPostRequest request)
+    {
         try {
-            return defaultApi.schemasSchemaTablesTableSplitsSplitRowsPost(schemaName,
-                    tableName,
-                    split,
-                    requestBody);
+            return invoke(api -> api.schemasSchemaTablesTableChangesPost(schemaName, tableName, request));
         }
         catch (ApiException e) {
-            log.error(e, "Failed to get rows for table: %s.%s", schemaName, tableName);
+            if (e.getCode() != 404 && e.getCode() != 410) {
+                log.error(e, "Failed to get changes for table: %s.%s", schemaName, tableName);
+            }
             throw new OpenAPIServiceException(e);
         }
     }
 
+    @Managed
+    @Nested
+    public SingleFlight<RowsKey, PageResult> getPageRowsSingleFlight()
+    {
+        return pageRowsSingleFlight;
+    }
+
+    @PreDestroy
     @Override
     public void close()
     {
+        listTablesExecutor.shutdownNow();
+    }
+
+    static class RowsKey
+    {
+        private final String schemaName;
+        private final String tableName;
+        private final String split;
+        private final SchemasSchemaTablesTableSplitsSplitRowsPostRequest request;
+
+        public RowsKey(String schemaName, String tableName, String split, SchemasSchemaTablesTableSplitsSplitRowsPostRequest request)
+        {
+            this.schemaName = requireNonNull(schemaName);
+            this.tableName = requireNonNull(tableName);
+            this.split = requireNonNull(split);
+            this.request = requireNonNull(request);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            RowsKey that = (RowsKey) o;
+            return Objects.equals(schemaName, that.schemaName) &&
+                    Objects.equals(tableName, that.tableName) &&
+                    Objects.equals(split, that.split) &&
+                    Objects.equals(request, that.request);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(schemaName, tableName, split, request);
+        }
     }
 }
@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.connector.openapi.clientv3.model.Aggregate;
+import com.facebook.presto.connector.openapi.clientv3.model.Aggregation;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Aggregation pushed down into a table layout, see the {@code Aggregation} schema of the API.
+ */
+public class OpenAPIAggregation
+{
+    private final List<String> groupingKeys;
+    private final List<OpenAPIAggregate> aggregates;
+
+    @JsonCreator
+    public OpenAPIAggregation(@JsonProperty("groupingKeys") List<String> groupingKeys,
+                              @JsonProperty("aggregates") List<OpenAPIAggregate> aggregates)
+    {
+        this.groupingKeys = ImmutableList.copyOf(requireNonNull(groupingKeys, "groupingKeys is null"));
+        this.aggregates = ImmutableList.copyOf(requireNonNull(aggregates, "aggregates is null"));
+    }
+
+    @JsonProperty
+    public List<String> getGroupingKeys()
+    {
+        return groupingKeys;
+    }
+
+    @JsonProperty
+    public List<OpenAPIAggregate> getAggregates()
+    {
+        return aggregates;
+    }
+
+    public Aggregation toOpenAPIAggregation()
+    {
+        return new Aggregation()
+                .groupingKeys(groupingKeys)
+                .aggregates(aggregates.stream()
+                        .map(OpenAPIAggregate::toOpenAPIAggregate)
+                        .collect(toImmutableList()));
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        OpenAPIAggregation other = (OpenAPIAggregation) obj;
+        return Objects.equals(this.groupingKeys, other.groupingKeys) &&
+                Objects.equals(this.aggregates, other.aggregates);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(groupingKeys, aggregates);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("groupingKeys", groupingKeys)
+                .add("aggregates", aggregates)
+                .toString();
+    }
+
+    public static class OpenAPIAggregate
+    {
+        private final String name;
+        private final Aggregate.FunctionEnum function;
+        private final Optional<String> column;
+
+        @JsonCreator
+        public OpenAPIAggregate(@JsonProperty("name") String name,
+                                @JsonProperty("function") Aggregate.FunctionEnum function,
+                                @JsonProperty("column") Optional<String> column)
+        {
+            this.name = requireNonNull(name, "name is null");
+            this.function = requireNonNull(function, "function is null");
+            this.column = requireNonNull(column, "column is null");
+        }
+
+        @JsonProperty
+        public String getName()
+        {
+            return name;
+        }
+
+        @JsonProperty
+        public Aggregate.FunctionEnum getFunction()
+        {
+            return function;
+        }
+
+        @JsonProperty
+        public Optional<String> getColumn()
+        {
+            return column;
+        }
+
+        public Aggregate toOpenAPIAggregate()
+        {
+            return new Aggregate()
+                    .name(name)
+                    .function(function)
+                    .column(column.orElse(null));
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            OpenAPIAggregate other = (OpenAPIAggregate) obj;
+            return Objects.equals(this.name, other.name) &&
+                    Objects.equals(this.function, other.function) &&
+                    Objects.equals(this.column, other.column);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(name, function, column);
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("name", name)
+                    .add("function", function)
+                    .add("column", column)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.connector.openapi.clientv3.model.BloomFilter;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import io.airlift.slice.Slice;
+
+import java.util.Base64;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bloom filter with the layout and hashing scheme described by the {@code BloomFilter}
+ * schema of the API, so that backends can evaluate it without depending on Presto.
+ */
+public class OpenAPIBloomFilter
+{
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128(0);
+    private static final int MIN_BITS = 64;
+
+    private final byte[] bits;
+    private final int numBits;
+    private final int numHashFunctions;
+
+    private OpenAPIBloomFilter(int numBits, int numHashFunctions)
+    {
+        this.bits = new byte[(numBits + 7) / 8];
+        this.numBits = numBits;
+        this.numHashFunctions = numHashFunctions;
+    }
+
+    /**
+     * Creates an empty filter sized for the expected number of values and false positive
+     * probability. The size is capped at maxSizeInBytes, at the expense of more false positives.
+     */
+    public static OpenAPIBloomFilter create(int expectedValues, double falsePositiveProbability, int maxSizeInBytes)
+    {
+        checkArgument(expectedValues > 0, "expectedValues must be positive");
+        checkArgument(falsePositiveProbability > 0 && falsePositiveProbability < 1, "falsePositiveProbability must be in (0, 1)");
+        checkArgument(maxSizeInBytes > 0, "maxSizeInBytes must be positive");
+
+        double optimalBits = -expectedValues * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+        int numBits = (int) Math.max(MIN_BITS, Math.min(Math.ceil(optimalBits), maxSizeInBytes * 8L));
+        int numHashFunctions = (int) Math.max(1, Math.round((double) numBits / expectedValues * Math.log(2)));
+        return new OpenAPIBloomFilter(numBits, numHashFunctions);
+    }
+
+    public int getNumBits()
+    {
+        return numBits;
+    }
+
+    public int getNumHashFunctions()
+    {
+        return numHashFunctions;
+    }
+
+    public void put(Slice value)
+    {
+        byte[] hash = HASH_FUNCTION.hashBytes(value.getBytes()).asBytes();
+        long hash1 = littleEndianLong(hash, 0);
+        long hash2 = littleEndianLong(hash, 8);
+        for (int i = 0; i < numHashFunctions; i++) {
+            int bit = (int) Math.floorMod(hash1 + i * hash2, (long) numBits);
+            bits[bit >>> 3] |= (byte) (1 << (bit & 7));
+        }
+    }
+
+    public boolean mightContain(Slice value)
+    {
+        byte[] hash = HASH_FUNCTION.hashBytes(value.getBytes()).asBytes();
+        long hash1 = littleEndianLong(hash, 0);
+        long hash2 = littleEndianLong(hash, 8);
+        for (int i = 0; i < numHashFunctions; i++) {
+            int bit = (int) Math.floorMod(hash1 + i * hash2, (long) numBits);
+            if ((bits[bit >>> 3] & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public BloomFilter toOpenAPIBloomFilter()
+    {
+        return new BloomFilter()
+                .hashFunction(BloomFilter.HashFunctionEnum.MURMUR3_X64_128)
+                .numHashFunctions(numHashFunctions)
+                .numBits(numBits)
+                .bits(Base64.getEncoder().encodeToString(bits));
+    }
+
+    private static long littleEndianLong(byte[] bytes, int offset)
+    {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (bytes[offset + i] & 0xFFL);
+        }
+        return value;
+    }
+}
@@ -18,30 +18,44 @@ import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ColumnMetadata;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
 
 import javax.annotation.Nullable;
 
+import java.util.List;
 import java.util.Objects;
 
 import static java.util.Objects.requireNonNull;
 
+/**
+ * A column of the table, or a nested field of a ROW column when subfields is not empty.
+ * In the latter case the type is the type of the nested field.
+ */
 public class OpenAPIColumnHandle
         implements ColumnHandle
 {
     private final String name;
     private final Type type;
+    private final List<String> subfields;
 
     public OpenAPIColumnHandle(ColumnMetadata columnMetadata)
     {
         this(columnMetadata.getName(), columnMetadata.getType());
     }
 
+    public OpenAPIColumnHandle(String name, Type type)
+    {
+        this(name, type, ImmutableList.of());
+    }
+
     @JsonCreator
     public OpenAPIColumnHandle(@JsonProperty("name") @Nullable String name,
-                               @JsonProperty("type") @Nullable Type type)
+                               @JsonProperty("type") @Nullable Type type,
+                               @JsonProperty("subfields") @Nullable List<String> subfields)
     {
         this.name = requireNonNull(name);
         this.type = requireNonNull(type);
+        this.subfields = ImmutableList.copyOf(requireNonNull(subfields));
     }
 
     @JsonProperty
@@ -56,6 +70,32 @@ public class OpenAPIColumnHandle
         return type;
     }
 
+    @JsonProperty
+    public List<String> getSubfields()
+    {
+        return subfields;
+    }
+
+    /**
+     * Returns the name used for the column in the requests, the dotted path of the nested field
+     * for projected subfields.
+     */
+    public String getPath()
+    {
+        if (subfields.isEmpty()) {
+            return name;
+        }
+        return name + "." + String.join(".", subfields);
+    }
+
+    public OpenAPIColumnHandle withSubfield(String subfield, Type subfieldType)
+    {
+        return new OpenAPIColumnHandle(name, subfieldType, ImmutableList.<String>builder()
+                .addAll(subfields)
+                .add(subfield)
+                .build());
+    }
+
     public ColumnMetadata getColumnMetadata()
     {
         return new ColumnMetadata(name, type);
@@ -71,13 +111,15 @@ public class OpenAPIColumnHandle
             return false;
         }
         OpenAPIColumnHandle that = (OpenAPIColumnHandle) o;
-        return Objects.equals(name, that.name) && Objects.equals(type, that.type);
+        return Objects.equals(name, that.name) &&
+                Objects.equals(type, that.type) &&
+                Objects.equals(subfields, that.subfields);
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hash(name, type);
+        return Objects.hash(name, type, subfields);
     }
 
     @Override
@@ -86,6 +128,7 @@ public class OpenAPIColumnHandle
         return "OpenAPIColumnHandle{" +
                 "name='" + name + '\'' +
                 ", type=" + type +
+                ", subfields=" + subfields +
                 '}';
     }
 }
@@ -16,8 +16,10 @@ package com.facebok.presto.connector.openapi;
 import com.facebook.airlift.bootstrap.LifeCycleManager;
 import com.facebook.airlift.log.Logger;
 import com.facebook.presto.spi.connector.Connector;
+import com.facebook.presto.spi.connector.ConnectorIndexProvider;
 import com.facebook.presto.spi.connector.ConnectorMetadata;
 import com.facebook.presto.spi.connector.ConnectorPageSourceProvider;
+import com.facebook.presto.spi.connector.ConnectorPlanOptimizerProvider;
 import com.facebook.presto.spi.connector.ConnectorSplitManager;
 import com.facebook.presto.spi.connector.ConnectorTransactionHandle;
 import com.facebook.presto.spi.transaction.IsolationLevel;
@@ -34,18 +36,24 @@ public class OpenAPIConnector
     private final OpenAPIMetadata metadata;
     private final OpenAPISplitManager splitManager;
     private final OpenAPIPageSourceProvider pageSourceProvider;
+    private final OpenAPIPlanOptimizerProvider planOptimizerProvider;
+    private final OpenAPIIndexProvider indexProvider;
 
     @Inject
     public OpenAPIConnector(
             LifeCycleManager lifeCycleManager,
             OpenAPIMetadata metadata,
             OpenAPISplitManager splitManager,
-            OpenAPIPageSourceProvider pageSourceProvider)
+            OpenAPIPageSourceProvider pageSourceProvider,
+            OpenAPIPlanOptimizerProvider planOptimizerProvider,
+            OpenAPIIndexProvider indexProvider)
     {
         this.lifeCycleManager = requireNonNull(lifeCycleManager);
         this.metadata = requireNonNull(metadata);
         this.splitManager = requireNonNull(splitManager);
         this.pageSourceProvider = requireNonNull(pageSourceProvider);
+        this.planOptimizerProvider = requireNonNull(planOptimizerProvider);
+        this.indexProvider = requireNonNull(indexProvider);
     }
 
     @Override
@@ -72,6 +80,18 @@ public class OpenAPIConnector
         return splitManager;
     }
 
+    @Override
+    public ConnectorIndexProvider getIndexProvider()
+    {
+        return indexProvider;
+    }
+
+    @Override
+    public ConnectorPlanOptimizerProvider getConnectorPlanOptimizerProvider()
+    {
+        return planOptimizerProvider;
+    }
+
     @Override
     public final void shutdown()
     {
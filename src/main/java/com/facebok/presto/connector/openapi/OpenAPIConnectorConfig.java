@@ -16,9 +16,18 @@ package com.facebok.presto.connector.openapi;
 import com.facebok.presto.connector.openapi.annotations.ConnectorId;
 import com.facebook.airlift.configuration.Config;
 import com.facebook.airlift.configuration.ConfigSecuritySensitive;
+import com.facebook.presto.spi.SchemaTableName;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Min;
 
+import java.util.List;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
 public class OpenAPIConnectorConfig
 {
     private String connectorId;
@@ -27,6 +36,9 @@ public class OpenAPIConnectorConfig
 
     private int metadataRefreshThreads = 1;
     private int metadataRefreshIntervalMs = 60_000;
+    private int listTablesThreads = 8;
+    private int metadataCacheMaxEntries = 10_000;
+    private int metadataCacheNegativeTtlMs = 60_000;
 
     private String basicAuthUsername;
     private String basicAuthPassword;
@@ -39,11 +51,43 @@ public class OpenAPIConnectorConfig
     private int httpClientReadTimeoutMs = 10_000;
     private int httpClientWriteTimeoutMs = 10_000;
 
+    private int replicaEjectionFailureThreshold = 3;
+    private int replicaEjectionDurationMs = 30_000;
+
+    private int maxInListSize = 1_000;
+
+    private boolean dynamicFilteringEnabled = true;
+    private double bloomFilterFalsePositiveProbability = 0.01;
+    private int bloomFilterMaxSizeBytes = 1024 * 1024;
+
+    private int indexLookupBatchSize = 1_000;
+    private boolean pageCacheEnabled;
+    private long pageCacheMaxSizeBytes = 256 * 1024 * 1024;
+    private int pageCacheTtlMs = 60_000;
+    private String pageCacheTables;
+    private String pageCacheDiskDirectory;
+    private long pageCacheDiskMaxSizeBytes = 10L * 1024 * 1024 * 1024;
+    private String replicatedTables;
+    private int replicatedTablesRefreshIntervalMs = 60_000;
+    private int splitCacheTtlMs;
+    private int splitCacheMaxEntries = 1_000;
+
     public String getBaseUrl()
     {
         return baseUrl;
     }
 
+    /**
+     * Returns the base URLs of all the replicas of the OpenAPI endpoint.
+     */
+    public List<String> getBaseUrls()
+    {
+        if (baseUrl == null) {
+            return ImmutableList.of();
+        }
+        return Splitter.on(',').trimResults().omitEmptyStrings().splitToList(baseUrl);
+    }
+
     @ConnectorId
     public OpenAPIConnectorConfig setConnectorId(String connectorId)
     {
@@ -122,6 +166,51 @@ public class OpenAPIConnectorConfig
         return metadataRefreshThreads;
     }
 
+    @Config("presto-openapi.metadata_cache.max_entries")
+    public OpenAPIConnectorConfig setMetadataCacheMaxEntries(int metadataCacheMaxEntries)
+    {
+        this.metadataCacheMaxEntries = metadataCacheMaxEntries;
+        return this;
+    }
+
+    @Min(1)
+    public int getMetadataCacheMaxEntries()
+    {
+        return metadataCacheMaxEntries;
+    }
+
+    @Config("presto-openapi.metadata_cache.negative_ttl_ms")
+    public OpenAPIConnectorConfig setMetadataCacheNegativeTtlMs(int metadataCacheNegativeTtlMs)
+    {
+        this.metadataCacheNegativeTtlMs = metadataCacheNegativeTtlMs;
+        return this;
+    }
+
+    /**
+     * Returns how long the tables and schemas found missing are remembered, zero to always look them up.
+     */
+    @Min(0)
+    public int getMetadataCacheNegativeTtlMs()
+    {
+        return metadataCacheNegativeTtlMs;
+    }
+
+    @Config("presto-openapi.list_tables_threads")
+    public OpenAPIConnectorConfig setListTablesThreads(int listTablesThreads)
+    {
+        this.listTablesThreads = listTablesThreads;
+        return this;
+    }
+
+    /**
+     * Returns the number of schemas whose tables are listed in parallel.
+     */
+    @Min(1)
+    public int getListTablesThreads()
+    {
+        return listTablesThreads;
+    }
+
     @Config("presto-openapi.metadata_refresh_interval_ms")
     public OpenAPIConnectorConfig setMetadataRefreshIntervalMs(int metadataRefreshIntervalMs)
     {
@@ -167,4 +256,243 @@ public class OpenAPIConnectorConfig
     {
         return httpClientWriteTimeoutMs;
     }
+
+    @Config("presto-openapi.replica.ejection_failure_threshold")
+    public OpenAPIConnectorConfig setReplicaEjectionFailureThreshold(int replicaEjectionFailureThreshold)
+    {
+        this.replicaEjectionFailureThreshold = replicaEjectionFailureThreshold;
+        return this;
+    }
+
+    @Min(1)
+    public int getReplicaEjectionFailureThreshold()
+    {
+        return replicaEjectionFailureThreshold;
+    }
+
+    @Config("presto-openapi.replica.ejection_duration_ms")
+    public OpenAPIConnectorConfig setReplicaEjectionDurationMs(int replicaEjectionDurationMs)
+    {
+        this.replicaEjectionDurationMs = replicaEjectionDurationMs;
+        return this;
+    }
+
+    @Min(0)
+    public int getReplicaEjectionDurationMs()
+    {
+        return replicaEjectionDurationMs;
+    }
+
+    @Config("presto-openapi.max_in_list_size")
+    public OpenAPIConnectorConfig setMaxInListSize(int maxInListSize)
+    {
+        this.maxInListSize = maxInListSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxInListSize()
+    {
+        return maxInListSize;
+    }
+
+    @Config("presto-openapi.dynamic_filtering_enabled")
+    public OpenAPIConnectorConfig setDynamicFilteringEnabled(boolean dynamicFilteringEnabled)
+    {
+        this.dynamicFilteringEnabled = dynamicFilteringEnabled;
+        return this;
+    }
+
+    public boolean isDynamicFilteringEnabled()
+    {
+        return dynamicFilteringEnabled;
+    }
+
+    @Config("presto-openapi.bloom_filter.false_positive_probability")
+    public OpenAPIConnectorConfig setBloomFilterFalsePositiveProbability(double bloomFilterFalsePositiveProbability)
+    {
+        this.bloomFilterFalsePositiveProbability = bloomFilterFalsePositiveProbability;
+        return this;
+    }
+
+    @DecimalMin(value = "0", inclusive = false)
+    @DecimalMax(value = "1", inclusive = false)
+    public double getBloomFilterFalsePositiveProbability()
+    {
+        return bloomFilterFalsePositiveProbability;
+    }
+
+    @Config("presto-openapi.bloom_filter.max_size_bytes")
+    public OpenAPIConnectorConfig setBloomFilterMaxSizeBytes(int bloomFilterMaxSizeBytes)
+    {
+        this.bloomFilterMaxSizeBytes = bloomFilterMaxSizeBytes;
+        return this;
+    }
+
+    @Min(8)
+    public int getBloomFilterMaxSizeBytes()
+    {
+        return bloomFilterMaxSizeBytes;
+    }
+
+    @Config("presto-openapi.index.lookup_batch_size")
+    public OpenAPIConnectorConfig setIndexLookupBatchSize(int indexLookupBatchSize)
+    {
+        this.indexLookupBatchSize = indexLookupBatchSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getIndexLookupBatchSize()
+    {
+        return indexLookupBatchSize;
+    }
+
+    @Config("presto-openapi.page_cache.enabled")
+    public OpenAPIConnectorConfig setPageCacheEnabled(boolean pageCacheEnabled)
+    {
+        this.pageCacheEnabled = pageCacheEnabled;
+        return this;
+    }
+
+    public boolean isPageCacheEnabled()
+    {
+        return pageCacheEnabled;
+    }
+
+    @Config("presto-openapi.page_cache.max_size_bytes")
+    public OpenAPIConnectorConfig setPageCacheMaxSizeBytes(long pageCacheMaxSizeBytes)
+    {
+        this.pageCacheMaxSizeBytes = pageCacheMaxSizeBytes;
+        return this;
+    }
+
+    @Min(0)
+    public long getPageCacheMaxSizeBytes()
+    {
+        return pageCacheMaxSizeBytes;
+    }
+
+    @Config("presto-openapi.page_cache.ttl_ms")
+    public OpenAPIConnectorConfig setPageCacheTtlMs(int pageCacheTtlMs)
+    {
+        this.pageCacheTtlMs = pageCacheTtlMs;
+        return this;
+    }
+
+    @Min(0)
+    public int getPageCacheTtlMs()
+    {
+        return pageCacheTtlMs;
+    }
+
+    @Config("presto-openapi.page_cache.tables")
+    public OpenAPIConnectorConfig setPageCacheTables(String pageCacheTables)
+    {
+        this.pageCacheTables = pageCacheTables;
+        return this;
+    }
+
+    /**
+     * Returns the tables whose pages are cached, all of them if empty.
+     */
+    public List<SchemaTableName> getPageCacheTables()
+    {
+        return parseTableNames(pageCacheTables);
+    }
+
+    @Config("presto-openapi.page_cache.disk.directory")
+    public OpenAPIConnectorConfig setPageCacheDiskDirectory(String pageCacheDiskDirectory)
+    {
+        this.pageCacheDiskDirectory = pageCacheDiskDirectory;
+        return this;
+    }
+
+    /**
+     * Returns the local directory of the disk tier of the page cache, if any.
+     */
+    public String getPageCacheDiskDirectory()
+    {
+        return pageCacheDiskDirectory;
+    }
+
+    @Config("presto-openapi.page_cache.disk.max_size_bytes")
+    public OpenAPIConnectorConfig setPageCacheDiskMaxSizeBytes(long pageCacheDiskMaxSizeBytes)
+    {
+        this.pageCacheDiskMaxSizeBytes = pageCacheDiskMaxSizeBytes;
+        return this;
+    }
+
+    @Min(0)
+    public long getPageCacheDiskMaxSizeBytes()
+    {
+        return pageCacheDiskMaxSizeBytes;
+    }
+
+    @Config("presto-openapi.replicated_tables")
+    public OpenAPIConnectorConfig setReplicatedTables(String replicatedTables)
+    {
+        this.replicatedTables = replicatedTables;
+        return this;
+    }
+
+    /**
+     * Returns the small tables of which each worker keeps a full copy in memory.
+     */
+    public List<SchemaTableName> getReplicatedTables()
+    {
+        return parseTableNames(replicatedTables);
+    }
+
+    @Config("presto-openapi.replicated_tables.refresh_interval_ms")
+    public OpenAPIConnectorConfig setReplicatedTablesRefreshIntervalMs(int replicatedTablesRefreshIntervalMs)
+    {
+        this.replicatedTablesRefreshIntervalMs = replicatedTablesRefreshIntervalMs;
+        return this;
+    }
+
+    @Min(1000)
+    public int getReplicatedTablesRefreshIntervalMs()
+    {
+        return replicatedTablesRefreshIntervalMs;
+    }
+
+    @Config("presto-openapi.split_cache.ttl_ms")
+    public OpenAPIConnectorConfig setSplitCacheTtlMs(int splitCacheTtlMs)
+    {
+        this.splitCacheTtlMs = splitCacheTtlMs;
+        return this;
+    }
+
+    /**
+     * Returns how long the split lists are cached on the coordinator, zero to disable the cache.
+     */
+    @Min(0)
+    public int getSplitCacheTtlMs()
+    {
+        return splitCacheTtlMs;
+    }
+
+    @Config("presto-openapi.split_cache.max_entries")
+    public OpenAPIConnectorConfig setSplitCacheMaxEntries(int splitCacheMaxEntries)
+    {
+        this.splitCacheMaxEntries = splitCacheMaxEntries;
+        return this;
+    }
+
+    @Min(1)
+    public int getSplitCacheMaxEntries()
+    {
+        return splitCacheMaxEntries;
+    }
+
+    private static List<SchemaTableName> parseTableNames(String tableNames)
+    {
+        if (tableNames == null) {
+            return ImmutableList.of();
+        }
+        return Splitter.on(',').trimResults().omitEmptyStrings().splitToList(tableNames).stream()
+                .map(SchemaTableName::valueOf)
+                .collect(toImmutableList());
+    }
 }
@@ -15,6 +15,7 @@ package com.facebok.presto.connector.openapi;
 
 import com.facebok.presto.connector.openapi.util.RebindSafeMBeanServer;
 import com.facebook.airlift.bootstrap.Bootstrap;
+import com.facebook.presto.common.block.BlockEncodingSerde;
 import com.facebook.presto.common.type.TypeManager;
 import com.facebook.presto.spi.ConnectorHandleResolver;
 import com.facebook.presto.spi.connector.Connector;
@@ -66,6 +67,7 @@ public class OpenAPIConnectorFactory
                         binder.bind(MBeanServer.class).toInstance(
                                 new RebindSafeMBeanServer(getPlatformMBeanServer()));
                         binder.bind(TypeManager.class).toInstance(context.getTypeManager());
+                        binder.bind(BlockEncodingSerde.class).toInstance(context.getBlockEncodingSerde());
                     },
                     locationModule,
                     new OpenAPIModule(catalogName));
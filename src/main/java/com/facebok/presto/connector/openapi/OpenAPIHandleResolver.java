@@ -15,6 +15,7 @@ package com.facebok.presto.connector.openapi;
 
 import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ConnectorHandleResolver;
+import com.facebook.presto.spi.ConnectorIndexHandle;
 import com.facebook.presto.spi.ConnectorSplit;
 import com.facebook.presto.spi.ConnectorTableHandle;
 import com.facebook.presto.spi.ConnectorTableLayoutHandle;
@@ -47,6 +48,12 @@ public class OpenAPIHandleResolver
         return OpenAPIConnectorSplit.class;
     }
 
+    @Override
+    public Class<? extends ConnectorIndexHandle> getIndexHandleClass()
+    {
+        return OpenAPIIndexHandle.class;
+    }
+
     @Override
     public Class<? extends ConnectorTransactionHandle> getTransactionHandleClass()
     {
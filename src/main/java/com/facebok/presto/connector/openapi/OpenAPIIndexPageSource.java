@@ -0,0 +1,208 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.connector.openapi.clientv3.model.Block;
+import com.facebook.presto.connector.openapi.clientv3.model.PageResult;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableIndexRowsPostRequest;
+import com.facebook.presto.connector.openapi.clientv3.model.TupleDomain;
+import com.facebook.presto.spi.ColumnHandle;
+import com.facebook.presto.spi.ConnectorPageSource;
+import com.facebook.presto.spi.RecordCursor;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.facebok.presto.connector.openapi.OpenAPIPageDecoder.toPage;
+import static com.facebok.presto.connector.openapi.OpenAPITupleDomainConverter.toBlock;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Looks up the rows matching the keys read from a cursor, in batches of keys.
+ */
+public class OpenAPIIndexPageSource
+        implements ConnectorPageSource
+{
+    private final OpenAPIService service;
+    private final String schemaName;
+    private final String tableName;
+
+    private final List<String> keyColumnNames;
+    private final List<Type> keyColumnTypes;
+    private final List<String> outputColumnNames;
+    private final List<Type> outputColumnTypes;
+    private final TupleDomain outputConstraint;
+
+    private final RecordCursor keyCursor;
+    private final int lookupBatchSize;
+
+    private List<Block> keys;
+    private String nextToken;
+    private boolean keysExhausted;
+
+    private long completedBytes;
+    private long completedPositions;
+    private long readTimeNanos;
+
+    public OpenAPIIndexPageSource(OpenAPIService service,
+                                  String schemaName,
+                                  String tableName,
+                                  List<ColumnHandle> keyColumns,
+                                  List<ColumnHandle> outputColumns,
+                                  TupleDomain outputConstraint,
+                                  RecordCursor keyCursor,
+                                  int lookupBatchSize)
+    {
+        this.service = requireNonNull(service);
+        this.schemaName = requireNonNull(schemaName);
+        this.tableName = requireNonNull(tableName);
+        this.keyColumnNames = keyColumns.stream()
+                .map(column -> ((OpenAPIColumnHandle) column).getName())
+                .collect(toImmutableList());
+        this.keyColumnTypes = keyColumns.stream()
+                .map(column -> ((OpenAPIColumnHandle) column).getType())
+                .collect(toImmutableList());
+        this.outputColumnNames = outputColumns.stream()
+                .map(column -> ((OpenAPIColumnHandle) column).getName())
+                .collect(toImmutableList());
+        this.outputColumnTypes = outputColumns.stream()
+                .map(column -> ((OpenAPIColumnHandle) column).getType())
+                .collect(toImmutableList());
+        this.outputConstraint = outputConstraint;
+        this.keyCursor = requireNonNull(keyCursor);
+        this.lookupBatchSize = lookupBatchSize;
+    }
+
+    @Override
+    public long getCompletedBytes()
+    {
+        return completedBytes;
+    }
+
+    @Override
+    public long getCompletedPositions()
+    {
+        return completedPositions;
+    }
+
+    @Override
+    public long getReadTimeNanos()
+    {
+        return readTimeNanos;
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        return keysExhausted && keys == null;
+    }
+
+    @Override
+    public Page getNextPage()
+    {
+        if (keys == null) {
+            keys = readKeys();
+            if (keys == null) {
+                return null;
+            }
+        }
+
+        long start = System.nanoTime();
+        PageResult pageResult = service.getIndexRows(schemaName, tableName, new SchemasSchemaTablesTableIndexRowsPostRequest()
+                .keyColumns(keyColumnNames)
+                .keys(keys)
+                .desiredColumns(outputColumnNames)
+                .outputConstraint(outputConstraint)
+                .nextToken(nextToken));
+        readTimeNanos += System.nanoTime() - start;
+
+        nextToken = pageResult.getNextToken();
+        if (nextToken == null) {
+            // Move on to the next batch of keys
+            keys = null;
+        }
+
+        Page page = toPage(pageResult, outputColumnTypes);
+        if (page != null) {
+            completedBytes += page.getSizeInBytes();
+            completedPositions += page.getPositionCount();
+        }
+        return page;
+    }
+
+    /**
+     * Reads the next batch of keys, one block per key column, or returns {@literal null}
+     * when there are no keys left.
+     */
+    private List<Block> readKeys()
+    {
+        List<List<Object>> values = new ArrayList<>();
+        for (int i = 0; i < keyColumnTypes.size(); i++) {
+            values.add(new ArrayList<>(lookupBatchSize));
+        }
+
+        int keyCount = 0;
+        while (keyCount < lookupBatchSize) {
+            if (!keyCursor.advanceNextPosition()) {
+                keysExhausted = true;
+                break;
+            }
+            if (hasNullKey()) {
+                // Null keys never match anything
+                continue;
+            }
+            for (int i = 0; i < keyColumnTypes.size(); i++) {
+                Class<?> javaType = keyColumnTypes.get(i).getJavaType();
+                values.get(i).add(javaType == long.class ? (Object) keyCursor.getLong(i) : keyCursor.getSlice(i));
+            }
+            keyCount++;
+        }
+
+        if (keyCount == 0) {
+            return null;
+        }
+
+        ImmutableList.Builder<Block> blocks = ImmutableList.builder();
+        for (int i = 0; i < keyColumnTypes.size(); i++) {
+            blocks.add(toBlock(keyColumnTypes.get(i), values.get(i)));
+        }
+        return blocks.build();
+    }
+
+    private boolean hasNullKey()
+    {
+        for (int i = 0; i < keyColumnTypes.size(); i++) {
+            if (keyCursor.isNull(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long getSystemMemoryUsage()
+    {
+        return 0;
+    }
+
+    @Override
+    public void close()
+    {
+        keyCursor.close();
+    }
+}
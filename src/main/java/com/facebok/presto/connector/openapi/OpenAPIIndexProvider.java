@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.spi.ColumnHandle;
+import com.facebook.presto.spi.ConnectorIndex;
+import com.facebook.presto.spi.ConnectorIndexHandle;
+import com.facebook.presto.spi.ConnectorSession;
+import com.facebook.presto.spi.connector.ConnectorIndexProvider;
+import com.facebook.presto.spi.connector.ConnectorTransactionHandle;
+import com.google.inject.Inject;
+
+import java.util.List;
+
+import static com.facebok.presto.connector.openapi.OpenAPITupleDomainConverter.toOpenAPITupleDomain;
+import static java.util.Objects.requireNonNull;
+
+public class OpenAPIIndexProvider
+        implements ConnectorIndexProvider
+{
+    private final OpenAPIService service;
+    private final int maxInListSize;
+    private final int lookupBatchSize;
+
+    @Inject
+    public OpenAPIIndexProvider(OpenAPIService service, OpenAPIConnectorConfig config)
+    {
+        this.service = requireNonNull(service);
+        this.maxInListSize = config.getMaxInListSize();
+        this.lookupBatchSize = config.getIndexLookupBatchSize();
+    }
+
+    @Override
+    public ConnectorIndex getIndex(
+            ConnectorTransactionHandle transaction,
+            ConnectorSession session,
+            ConnectorIndexHandle indexHandle,
+            List<ColumnHandle> lookupSchema,
+            List<ColumnHandle> outputSchema)
+    {
+        OpenAPIIndexHandle handle = (OpenAPIIndexHandle) indexHandle;
+        return recordSet -> new OpenAPIIndexPageSource(service,
+                handle.getSchemaName(),
+                handle.getTableName(),
+                lookupSchema,
+                outputSchema,
+                toOpenAPITupleDomain(handle.getConstraint(), maxInListSize),
+                recordSet.cursor(),
+                lookupBatchSize);
+    }
+}
@@ -13,13 +13,17 @@
  */
 package com.facebok.presto.connector.openapi;
 
+import com.facebok.presto.connector.openapi.OpenAPIService.TaggedTableMetadata;
 import com.facebok.presto.connector.openapi.annotations.ForMetadataRefresh;
 import com.facebook.airlift.log.Logger;
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.type.TypeManager;
 import com.facebook.presto.connector.openapi.clientv3.model.SchemaTable;
 import com.facebook.presto.connector.openapi.clientv3.model.TableMetadata;
 import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ColumnMetadata;
+import com.facebook.presto.spi.ConnectorResolvedIndex;
 import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.ConnectorTableHandle;
 import com.facebook.presto.spi.ConnectorTableLayout;
@@ -28,19 +32,24 @@ import com.facebook.presto.spi.ConnectorTableLayoutResult;
 import com.facebook.presto.spi.ConnectorTableMetadata;
 import com.facebook.presto.spi.Constraint;
 import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.SchemaNotFoundException;
 import com.facebook.presto.spi.SchemaTableName;
 import com.facebook.presto.spi.SchemaTablePrefix;
 import com.facebook.presto.spi.TableNotFoundException;
 import com.facebook.presto.spi.connector.ConnectorMetadata;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
 import io.airlift.units.Duration;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -48,11 +57,13 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 
+import static com.facebok.presto.connector.openapi.OpenAPITupleDomainConverter.getPredicateKind;
+import static com.facebok.presto.connector.openapi.OpenAPITupleDomainConverter.isEncodable;
+import static com.google.common.base.Throwables.throwIfUnchecked;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
-import static java.util.function.UnaryOperator.identity;
 
 public class OpenAPIMetadata
         implements ConnectorMetadata
@@ -62,21 +73,53 @@ public class OpenAPIMetadata
     // Expire entries in the cache that no longer receive updates
     private static final Duration EXPIRE_AFTER_WRITE = new Duration(10, MINUTES);
 
+    // The schema names are cached as a single entry
+    private static final String SCHEMAS_KEY = "schemas";
+    // Key of the single entry remembering that the bulk metadata endpoint is not supported
+    private static final String BULK_METADATA_KEY = "metadata";
+
     private final OpenAPIService service;
     private final TypeManager typeManager;
+    private final OpenAPIReplicatedTables replicatedTables;
+    private final int maxInListSize;
 
     private final LoadingCache<SchemaTableName, Optional<OpenAPITableMetadata>> tableCache;
+    private final LoadingCache<String, List<String>> schemaCache;
+    // Names probed recently that don't exist, kept apart so that they can expire sooner
+    private final Cache<SchemaTableName, Boolean> missingTables;
+    private final Cache<String, Boolean> missingSchemas;
+    // Entity tags of the cached table metadata, sent back to revalidate it on refresh
+    private final Cache<SchemaTableName, String> entityTags;
+
+    // Set when the backend does not implement the bulk metadata endpoint, until it is probed again
+    private final Cache<String, Boolean> bulkMetadataUnsupported;
 
     @Inject
     public OpenAPIMetadata(
             OpenAPIService service,
             OpenAPIConnectorConfig connectorConfig,
             TypeManager typeManager,
+            OpenAPIReplicatedTables replicatedTables,
             @ForMetadataRefresh ExecutorService metadataRefreshExecutor)
     {
         this.service = requireNonNull(service);
         this.typeManager = requireNonNull(typeManager);
+        this.replicatedTables = requireNonNull(replicatedTables);
+        this.maxInListSize = connectorConfig.getMaxInListSize();
         this.tableCache = newTableMetadataCache(connectorConfig, metadataRefreshExecutor);
+        this.schemaCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(EXPIRE_AFTER_WRITE.toMillis(), MILLISECONDS)
+                .refreshAfterWrite(connectorConfig.getMetadataRefreshIntervalMs(), MILLISECONDS)
+                .build(CacheLoader.asyncReloading(CacheLoader.from(key -> service.listSchemaNames()), metadataRefreshExecutor));
+        this.missingTables = newNegativeCache(connectorConfig);
+        this.missingSchemas = newNegativeCache(connectorConfig);
+        this.bulkMetadataUnsupported = CacheBuilder.newBuilder()
+                .expireAfterWrite(connectorConfig.getMetadataRefreshIntervalMs(), MILLISECONDS)
+                .build();
+        this.entityTags = CacheBuilder.newBuilder()
+                .maximumSize(connectorConfig.getMetadataCacheMaxEntries())
+                .expireAfterWrite(EXPIRE_AFTER_WRITE.toMillis(), MILLISECONDS)
+                .build();
     }
 
     @VisibleForTesting
@@ -85,21 +128,49 @@ public class OpenAPIMetadata
             ExecutorService metadataRefreshExecutor)
     {
         return CacheBuilder.newBuilder()
+                .maximumSize(connectorConfig.getMetadataCacheMaxEntries())
                 .expireAfterWrite(EXPIRE_AFTER_WRITE.toMillis(), MILLISECONDS)
                 .refreshAfterWrite(connectorConfig.getMetadataRefreshIntervalMs(), MILLISECONDS)
-                .build(CacheLoader.asyncReloading(CacheLoader.from(this::fetchTableMetadata), metadataRefreshExecutor));
+                .build(CacheLoader.asyncReloading(new CacheLoader<SchemaTableName, Optional<OpenAPITableMetadata>>()
+                {
+                    @Override
+                    public Optional<OpenAPITableMetadata> load(SchemaTableName schemaTableName)
+                    {
+                        return fetchTableMetadata(schemaTableName, Optional.empty());
+                    }
+
+                    @Override
+                    public Optional<OpenAPITableMetadata> reload(SchemaTableName schemaTableName, Optional<OpenAPITableMetadata> previous)
+                    {
+                        return fetchTableMetadata(schemaTableName, previous);
+                    }
+                }, metadataRefreshExecutor));
+    }
+
+    private static <K> Cache<K, Boolean> newNegativeCache(OpenAPIConnectorConfig connectorConfig)
+    {
+        return CacheBuilder.newBuilder()
+                .maximumSize(connectorConfig.getMetadataCacheMaxEntries())
+                .expireAfterWrite(connectorConfig.getMetadataCacheNegativeTtlMs(), MILLISECONDS)
+                .build();
     }
 
     @Override
     public List<String> listSchemaNames(ConnectorSession session)
     {
-        return service.listSchemaNames();
+        try {
+            return schemaCache.getUnchecked(SCHEMAS_KEY);
+        }
+        catch (UncheckedExecutionException e) {
+            throwIfUnchecked(e.getCause());
+            throw e;
+        }
     }
 
     @Override
     public ConnectorTableHandle getTableHandle(ConnectorSession session, SchemaTableName tableName)
     {
-        return tableCache.getUnchecked(tableName)
+        return getCachedTableMetadata(tableName)
                 .map(OpenAPITableMetadata::getSchemaTableName)
                 .map(OpenAPITableHandle::new)
                 .orElse(null);
@@ -118,8 +189,70 @@ public class OpenAPIMetadata
                 tableHandle.getTableName(),
                 desiredColumns,
                 constraint.getSummary());
+
+        // Presto only needs to evaluate what the backend doesn't apply exactly, the
+        // local copies of replicated tables are not filtered at all
+        SchemaTableName tableName = new SchemaTableName(tableHandle.getSchemaName(), tableHandle.getTableName());
+        TupleDomain<ColumnHandle> unenforcedConstraint = constraint.getSummary();
+        if (!isReplicated(tableName)) {
+            unenforcedConstraint = getOpenAPITableMetadata(tableName)
+                    .map(tableMetadata -> getUnenforcedConstraint(tableMetadata, constraint.getSummary()))
+                    .orElse(constraint.getSummary());
+        }
         return ImmutableList.of(new ConnectorTableLayoutResult(
-                new ConnectorTableLayout(layoutHandle), constraint.getSummary()));
+                new ConnectorTableLayout(layoutHandle), unenforcedConstraint));
+    }
+
+    private TupleDomain<ColumnHandle> getUnenforcedConstraint(OpenAPITableMetadata tableMetadata, TupleDomain<ColumnHandle> constraint)
+    {
+        if (!constraint.getDomains().isPresent()) {
+            return constraint;
+        }
+
+        Map<ColumnHandle, Domain> unenforcedDomains = new HashMap<>();
+        for (Map.Entry<ColumnHandle, Domain> entry : constraint.getDomains().get().entrySet()) {
+            OpenAPIColumnHandle column = (OpenAPIColumnHandle) entry.getKey();
+            boolean enforced = getPredicateKind(entry.getValue(), column.getType(), maxInListSize)
+                    .map(predicate -> tableMetadata.isEnforced(column.getName(), predicate))
+                    .orElse(false);
+            if (!enforced) {
+                unenforcedDomains.put(column, entry.getValue());
+            }
+        }
+        return TupleDomain.withColumnDomains(unenforcedDomains);
+    }
+
+    @Override
+    public Optional<ConnectorResolvedIndex> resolveIndex(
+            ConnectorSession session,
+            ConnectorTableHandle tableHandle,
+            Set<ColumnHandle> indexableColumns,
+            Set<ColumnHandle> outputColumns,
+            TupleDomain<ColumnHandle> tupleDomain)
+    {
+        OpenAPITableHandle table = (OpenAPITableHandle) tableHandle;
+        SchemaTableName tableName = new SchemaTableName(table.getSchemaName(), table.getTableName());
+        Optional<OpenAPITableMetadata> tableMetadata = getOpenAPITableMetadata(tableName);
+        if (!tableMetadata.isPresent() || isReplicated(tableName)) {
+            // Joins with replicated tables read the local copy instead
+            return Optional.empty();
+        }
+
+        // The keys are sent to the backend, so all the lookup columns must be encodable
+        Set<String> indexableColumnNames = new HashSet<>();
+        for (ColumnHandle column : indexableColumns) {
+            OpenAPIColumnHandle columnHandle = (OpenAPIColumnHandle) column;
+            if (!isEncodable(columnHandle.getType())) {
+                return Optional.empty();
+            }
+            indexableColumnNames.add(columnHandle.getName());
+        }
+        if (tableMetadata.get().getIndexableKeys().stream().noneMatch(indexableColumnNames::containsAll)) {
+            return Optional.empty();
+        }
+
+        OpenAPIIndexHandle indexHandle = new OpenAPIIndexHandle(table.getSchemaName(), table.getTableName(), tupleDomain);
+        return Optional.of(new ConnectorResolvedIndex(indexHandle, tupleDomain));
     }
 
     @Override
@@ -135,9 +268,38 @@ public class OpenAPIMetadata
         return getRequiredTableMetadata(new SchemaTableName(tableHandle.getSchemaName(), tableHandle.getTableName()));
     }
 
-    private ConnectorTableMetadata getRequiredTableMetadata(SchemaTableName schemaTableName)
+    /**
+     * Returns the cached metadata of a table, or empty if the table does not exist.
+     */
+    public Optional<OpenAPITableMetadata> getOpenAPITableMetadata(SchemaTableName schemaTableName)
+    {
+        return getCachedTableMetadata(schemaTableName);
+    }
+
+    private Optional<OpenAPITableMetadata> getCachedTableMetadata(SchemaTableName schemaTableName)
     {
+        if (missingSchemas.getIfPresent(schemaTableName.getSchemaName()) != null ||
+                missingTables.getIfPresent(schemaTableName) != null) {
+            return Optional.empty();
+        }
+
         Optional<OpenAPITableMetadata> table = tableCache.getUnchecked(schemaTableName);
+        if (!table.isPresent()) {
+            // Moved to the negative cache, which has its own TTL
+            tableCache.invalidate(schemaTableName);
+            missingTables.put(schemaTableName, true);
+        }
+        return table;
+    }
+
+    public boolean isReplicated(SchemaTableName schemaTableName)
+    {
+        return replicatedTables.isReplicated(schemaTableName);
+    }
+
+    private ConnectorTableMetadata getRequiredTableMetadata(SchemaTableName schemaTableName)
+    {
+        Optional<OpenAPITableMetadata> table = getCachedTableMetadata(schemaTableName);
         if (!table.isPresent()) {
             throw new TableNotFoundException(schemaTableName);
         }
@@ -165,12 +327,19 @@ public class OpenAPIMetadata
     @Override
     public List<SchemaTableName> listTables(ConnectorSession session, Optional<String> schemaName)
     {
+        if (schemaName.isPresent() && missingSchemas.getIfPresent(schemaName.get()) != null) {
+            throw new SchemaNotFoundException(schemaName.get());
+        }
+
         try {
             return service.listTables(schemaName.orElse(null))
                     .stream().map(schemaTable -> new SchemaTableName(schemaTable.getSchema(), schemaTable.getTable()))
                     .collect(toImmutableList());
         }
         catch (OpenAPIServiceException e) {
+            if (e.getStatusCode() == 404 && schemaName.isPresent()) {
+                missingSchemas.put(schemaName.get(), true);
+            }
             throw e.toPrestoException();
         }
     }
@@ -180,42 +349,123 @@ public class OpenAPIMetadata
             ConnectorSession session,
             SchemaTablePrefix prefix)
     {
+        if (prefix.getSchemaName() != null && prefix.getTableName() != null) {
+            return getOpenAPITableMetadata(prefix.toSchemaTableName())
+                    .map(tableMetadata -> ImmutableMap.of(tableMetadata.getSchemaTableName(), tableMetadata.toConnectorTableMetadata().getColumns()))
+                    .orElse(ImmutableMap.of());
+        }
+
         try {
-            return listTables(session, Optional.ofNullable(prefix.getSchemaName())).stream()
-                    .collect(ImmutableMap.toImmutableMap(identity(), schemaTableName -> getRequiredTableMetadata(schemaTableName).getColumns()));
+            List<String> schemaNames = prefix.getSchemaName() != null ? ImmutableList.of(prefix.getSchemaName()) : listSchemaNames(session);
+            ImmutableMap.Builder<SchemaTableName, List<ColumnMetadata>> columns = ImmutableMap.builder();
+            for (String schemaName : schemaNames) {
+                Optional<List<OpenAPITableMetadata>> tables = fetchSchemaTableMetadata(schemaName);
+                if (tables.isPresent()) {
+                    for (OpenAPITableMetadata tableMetadata : tables.get()) {
+                        columns.put(tableMetadata.getSchemaTableName(), tableMetadata.toConnectorTableMetadata().getColumns());
+                    }
+                }
+                else {
+                    for (SchemaTableName schemaTableName : listTables(session, Optional.of(schemaName))) {
+                        columns.put(schemaTableName, getRequiredTableMetadata(schemaTableName).getColumns());
+                    }
+                }
+            }
+            return columns.build();
         }
         catch (OpenAPIServiceException e) {
             throw e.toPrestoException();
         }
     }
 
-    private Optional<OpenAPITableMetadata> fetchTableMetadata(SchemaTableName schemaTableName)
+    /**
+     * Fetches the metadata of all the tables of a schema in a single request and caches it,
+     * or returns empty if the backend does not support it. A missing schema has no tables.
+     */
+    private Optional<List<OpenAPITableMetadata>> fetchSchemaTableMetadata(String schemaName)
+    {
+        if (missingSchemas.getIfPresent(schemaName) != null) {
+            return Optional.of(ImmutableList.of());
+        }
+        if (bulkMetadataUnsupported.getIfPresent(BULK_METADATA_KEY) != null) {
+            return Optional.empty();
+        }
+
+        List<TableMetadata> metadata;
+        try {
+            metadata = service.listTableMetadata(schemaName);
+        }
+        catch (OpenAPIServiceException e) {
+            // Backends that don't route the optional endpoint answer 404 for existing schemas too
+            if (e.getStatusCode() == 404 && !listSchemaNames(null).contains(schemaName)) {
+                missingSchemas.put(schemaName, true);
+                return Optional.of(ImmutableList.of());
+            }
+            if (e.getStatusCode() == 404 || e.getStatusCode() == 405 || e.getStatusCode() == 501) {
+                log.info("Bulk table metadata not supported, fetching the metadata of each table");
+                bulkMetadataUnsupported.put(BULK_METADATA_KEY, true);
+                return Optional.empty();
+            }
+            throw e;
+        }
+
+        ImmutableList.Builder<OpenAPITableMetadata> tables = ImmutableList.builder();
+        for (TableMetadata table : metadata) {
+            OpenAPITableMetadata tableMetadata = new OpenAPITableMetadata(table, typeManager);
+            if (!tableMetadata.getSchemaTableName().getSchemaName().equalsIgnoreCase(schemaName)) {
+                throw new PrestoException(OpenAPIErrorCode.OPENAPI_INVALID_RESPONSE, "Request and actual schema names are different");
+            }
+            tableCache.put(tableMetadata.getSchemaTableName(), Optional.of(tableMetadata));
+            // Not returned in bulk, so the next refresh fetches the metadata again in full
+            entityTags.invalidate(tableMetadata.getSchemaTableName());
+            missingTables.invalidate(tableMetadata.getSchemaTableName());
+            tables.add(tableMetadata);
+        }
+        log.info("Refreshed metadata of %d tables in schema: %s", metadata.size(), schemaName);
+        return Optional.of(tables.build());
+    }
+
+    private Optional<OpenAPITableMetadata> fetchTableMetadata(SchemaTableName schemaTableName, Optional<OpenAPITableMetadata> previous)
     {
         requireNonNull(schemaTableName);
 
-        TableMetadata metadata;
+        // Only revalidated when there is an entry to keep
+        String entityTag = previous.isPresent() ? entityTags.getIfPresent(schemaTableName) : null;
+        Optional<TaggedTableMetadata> response;
         try {
             SchemaTable schemaTable = new SchemaTable()
                     .schema(schemaTableName.getSchemaName())
                     .table(schemaTableName.getTableName());
 
-            metadata = service.getTableMetadata(schemaTable);
+            response = service.getTableMetadata(schemaTable, entityTag);
         }
         catch (OpenAPIServiceException e) {
+            entityTags.invalidate(schemaTableName);
             if (e.getStatusCode() == 404) {
-                log.warn(e, "Table not found: %s", schemaTableName);
+                log.debug("Table not found: %s", schemaTableName);
                 return Optional.empty();
             }
             log.warn(e, "Failed to fetch table metadata: %s", schemaTableName);
             throw e.toPrestoException();
         }
 
-        OpenAPITableMetadata tableMetadata = new OpenAPITableMetadata(metadata, typeManager);
+        if (!response.isPresent()) {
+            log.debug("Table metadata not modified: %s", schemaTableName);
+            return previous;
+        }
+
+        OpenAPITableMetadata tableMetadata = new OpenAPITableMetadata(response.get().getMetadata(), typeManager);
         if (!Objects.equals(tableMetadata.getSchemaTableName(), schemaTableName)) {
             throw new PrestoException(OpenAPIErrorCode.OPENAPI_INVALID_RESPONSE, "Request and actual table names are different");
         }
 
-        log.info("Refreshed table metadata: %s", tableMetadata);
+        if (response.get().getEntityTag() != null) {
+            entityTags.put(schemaTableName, response.get().getEntityTag());
+        }
+        else {
+            entityTags.invalidate(schemaTableName);
+        }
+        log.debug("Refreshed table metadata: %s", tableMetadata);
 
         return Optional.of(tableMetadata);
     }
@@ -16,12 +16,19 @@ package com.facebok.presto.connector.openapi;
 import com.facebok.presto.connector.openapi.annotations.ConnectorId;
 import com.facebok.presto.connector.openapi.annotations.ForMetadataRefresh;
 import com.facebook.airlift.concurrent.Threads;
+import com.facebook.presto.common.block.BlockEncodingSerde;
+import com.google.common.base.Ticker;
 import com.google.inject.Binder;
 import com.google.inject.Module;
 import com.google.inject.Provides;
 import com.google.inject.Scopes;
 import com.google.inject.Singleton;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.ObjectNameBuilder;
 
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -46,11 +53,14 @@ public class OpenAPIModule
         configBinder(binder).bindConfig(OpenAPIConnectorConfig.class);
 
         // Bind the services
-        binder.bind(OpenAPIService.class).to(DefaultOpenAPIService.class).in(Scopes.SINGLETON);
         binder.bind(OpenAPIConnector.class).in(Scopes.SINGLETON);
         binder.bind(OpenAPIMetadata.class).in(Scopes.SINGLETON);
         binder.bind(OpenAPISplitManager.class).in(Scopes.SINGLETON);
         binder.bind(OpenAPIPageSourceProvider.class).in(Scopes.SINGLETON);
+        binder.bind(OpenAPIPlanOptimizer.class).in(Scopes.SINGLETON);
+        binder.bind(OpenAPIPlanOptimizerProvider.class).in(Scopes.SINGLETON);
+        binder.bind(OpenAPIIndexProvider.class).in(Scopes.SINGLETON);
+        binder.bind(OpenAPIReplicatedTables.class).in(Scopes.SINGLETON);
     }
 
     @Provides
@@ -61,4 +71,72 @@ public class OpenAPIModule
         return Executors.newFixedThreadPool(config.getMetadataRefreshThreads(),
                 Threads.daemonThreadsNamed("metadata-refresh-%s"));
     }
+
+    @Provides
+    @Singleton
+    public OpenAPIService createService(OpenAPIConnectorConfig config, OpenAPIReplicaSelector replicaSelector, MBeanExporter exporter)
+    {
+        DefaultOpenAPIService service = new DefaultOpenAPIService(config, replicaSelector);
+        exporter.export(new ObjectNameBuilder(DefaultOpenAPIService.class.getPackage().getName())
+                .withProperty("type", DefaultOpenAPIService.class.getSimpleName())
+                .withProperty("catalog", connectorId)
+                .build(), service);
+        return service;
+    }
+
+    @Provides
+    @Singleton
+    public OpenAPIReplicaSelector createReplicaSelector(OpenAPIConnectorConfig config, MBeanExporter exporter)
+    {
+        OpenAPIReplicaSelector replicaSelector = new OpenAPIReplicaSelector(config);
+
+        // Export the stats of each replica under its own name
+        List<OpenAPIReplica> replicas = replicaSelector.getReplicas();
+        for (int i = 0; i < replicas.size(); i++) {
+            exporter.export(new ObjectNameBuilder(OpenAPIReplica.class.getPackage().getName())
+                    .withProperty("type", OpenAPIReplica.class.getSimpleName())
+                    .withProperty("catalog", connectorId)
+                    .withProperty("replica", String.valueOf(i))
+                    .build(), replicas.get(i));
+        }
+        return replicaSelector;
+    }
+
+    @Provides
+    @Singleton
+    public OpenAPIPageCache createPageCache(OpenAPIConnectorConfig config, BlockEncodingSerde blockEncodingSerde, MBeanExporter exporter)
+    {
+        Optional<OpenAPIPageDiskCache> diskCache = Optional.empty();
+        if (config.isPageCacheEnabled() && config.getPageCacheDiskDirectory() != null) {
+            // Each catalog gets its own directory, as it is emptied on startup
+            diskCache = Optional.of(new OpenAPIPageDiskCache(
+                    Paths.get(config.getPageCacheDiskDirectory(), connectorId),
+                    config.getPageCacheDiskMaxSizeBytes(),
+                    blockEncodingSerde,
+                    Ticker.systemTicker()));
+            exporter.export(new ObjectNameBuilder(OpenAPIPageDiskCache.class.getPackage().getName())
+                    .withProperty("type", OpenAPIPageDiskCache.class.getSimpleName())
+                    .withProperty("catalog", connectorId)
+                    .build(), diskCache.get());
+        }
+
+        OpenAPIPageCache pageCache = new OpenAPIPageCache(config, diskCache, Ticker.systemTicker());
+        exporter.export(new ObjectNameBuilder(OpenAPIPageCache.class.getPackage().getName())
+                .withProperty("type", OpenAPIPageCache.class.getSimpleName())
+                .withProperty("catalog", connectorId)
+                .build(), pageCache);
+        return pageCache;
+    }
+
+    @Provides
+    @Singleton
+    public OpenAPISplitCache createSplitCache(OpenAPIConnectorConfig config, MBeanExporter exporter)
+    {
+        OpenAPISplitCache splitCache = new OpenAPISplitCache(config);
+        exporter.export(new ObjectNameBuilder(OpenAPISplitCache.class.getPackage().getName())
+                .withProperty("type", OpenAPISplitCache.class.getSimpleName())
+                .withProperty("catalog", connectorId)
+                .build(), splitCache);
+        return splitCache;
+    }
 }
@@ -0,0 +1,287 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsSplitRowsPostRequest;
+import com.facebook.presto.spi.SchemaTableName;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalListeners;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.inject.Inject;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Worker local cache of the decoded pages returned by the rows requests. A page is
+ * identified by the whole request, so any difference in the columns, constraints or
+ * continuation token is a different entry.
+ * <p>
+ * Pages evicted because the cache is full are demoted to the optional disk tier, and
+ * promoted back on their next use. Either way they expire TTL after being loaded. The
+ * demotion runs on the writer of the disk tier rather than on the query thread.
+ */
+public class OpenAPIPageCache
+{
+    private final boolean enabled;
+    private final Set<SchemaTableName> tables;
+    private final long ttlNanos;
+    private final Ticker ticker;
+    private final Optional<OpenAPIPageDiskCache> diskCache;
+    private final Cache<PageKey, TimedPage> cache;
+
+    @Inject
+    public OpenAPIPageCache(OpenAPIConnectorConfig config)
+    {
+        this(config, Optional.empty(), Ticker.systemTicker());
+    }
+
+    public OpenAPIPageCache(OpenAPIConnectorConfig config, Optional<OpenAPIPageDiskCache> diskCache, Ticker ticker)
+    {
+        this.enabled = config.isPageCacheEnabled();
+        this.tables = ImmutableSet.copyOf(config.getPageCacheTables());
+        this.ttlNanos = MILLISECONDS.toNanos(config.getPageCacheTtlMs());
+        this.ticker = requireNonNull(ticker);
+        this.diskCache = requireNonNull(diskCache);
+        RemovalListener<PageKey, TimedPage> demote = this::demote;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(config.getPageCacheMaxSizeBytes())
+                .weigher((PageKey key, TimedPage page) -> page.getPage().getRetainedSizeInBytes())
+                .expireAfterWrite(ttlNanos, NANOSECONDS)
+                .removalListener(diskCache
+                        .map(disk -> RemovalListeners.asynchronous(demote, disk.getWriteExecutor()))
+                        .orElse(demote))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled(SchemaTableName table)
+    {
+        return enabled && (tables.isEmpty() || tables.contains(table));
+    }
+
+    /**
+     * Returns the cached page for the request, or loads and caches it if missing.
+     */
+    public CachedPage get(
+            SchemaTableName table,
+            String split,
+            SchemasSchemaTablesTableSplitsSplitRowsPostRequest request,
+            Supplier<CachedPage> loader)
+    {
+        if (!isEnabled(table)) {
+            return loader.get();
+        }
+        PageKey key = new PageKey(table, split, request);
+        try {
+            TimedPage page = cache.get(key, () -> load(key, loader));
+            if (page.isExpired(ticker)) {
+                // Promoted from the disk tier with less time left than the cache TTL
+                cache.invalidate(key);
+                page = cache.get(key, () -> load(key, loader));
+            }
+            return page.getPage();
+        }
+        catch (ExecutionException | UncheckedExecutionException e) {
+            throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private TimedPage load(PageKey key, Supplier<CachedPage> loader)
+    {
+        if (diskCache.isPresent()) {
+            Optional<TimedPage> page = diskCache.get().get(key);
+            if (page.isPresent()) {
+                return page.get();
+            }
+        }
+        return new TimedPage(loader.get(), ticker.read() + ttlNanos);
+    }
+
+    private void demote(RemovalNotification<PageKey, TimedPage> notification)
+    {
+        if (notification.getCause() == RemovalCause.SIZE &&
+                diskCache.isPresent() &&
+                !notification.getValue().isExpired(ticker)) {
+            diskCache.get().put(notification.getKey(), notification.getValue());
+        }
+    }
+
+    @Managed
+    public long getHitCount()
+    {
+        return cache.stats().hitCount();
+    }
+
+    @Managed
+    public long getMissCount()
+    {
+        return cache.stats().missCount();
+    }
+
+    @Managed
+    public double getHitRate()
+    {
+        CacheStats stats = cache.stats();
+        return stats.requestCount() == 0 ? 0 : stats.hitRate();
+    }
+
+    @Managed
+    public long getEvictionCount()
+    {
+        return cache.stats().evictionCount();
+    }
+
+    @Managed
+    public long getSize()
+    {
+        return cache.size();
+    }
+
+    @Managed
+    public void invalidateAll()
+    {
+        cache.invalidateAll();
+    }
+
+    @PreDestroy
+    public void close()
+    {
+        cache.invalidateAll();
+        diskCache.ifPresent(OpenAPIPageDiskCache::close);
+    }
+
+    /**
+     * A cached page together with the time it expires at, according to the cache ticker.
+     */
+    static class TimedPage
+    {
+        private final CachedPage page;
+        private final long expiresAtNanos;
+
+        public TimedPage(CachedPage page, long expiresAtNanos)
+        {
+            this.page = requireNonNull(page);
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        public CachedPage getPage()
+        {
+            return page;
+        }
+
+        public long getExpiresAtNanos()
+        {
+            return expiresAtNanos;
+        }
+
+        public boolean isExpired(Ticker ticker)
+        {
+            return ticker.read() - expiresAtNanos >= 0;
+        }
+    }
+
+    /**
+     * A page of rows together with the token to get the next one.
+     */
+    public static class CachedPage
+    {
+        // Accounts for the entry and the key
+        private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+        private final Page page;
+        private final String nextToken;
+
+        public CachedPage(@Nullable Page page, @Nullable String nextToken)
+        {
+            this.page = page;
+            this.nextToken = nextToken;
+        }
+
+        @Nullable
+        public Page getPage()
+        {
+            return page;
+        }
+
+        @Nullable
+        public String getNextToken()
+        {
+            return nextToken;
+        }
+
+        public int getRetainedSizeInBytes()
+        {
+            long size = ENTRY_OVERHEAD_BYTES + (page == null ? 0 : page.getRetainedSizeInBytes());
+            return (int) Math.min(size, Integer.MAX_VALUE);
+        }
+    }
+
+    static class PageKey
+    {
+        private final SchemaTableName table;
+        private final String split;
+        private final SchemasSchemaTablesTableSplitsSplitRowsPostRequest request;
+
+        public PageKey(SchemaTableName table, String split, SchemasSchemaTablesTableSplitsSplitRowsPostRequest request)
+        {
+            this.table = requireNonNull(table);
+            this.split = requireNonNull(split);
+            this.request = requireNonNull(request);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            PageKey that = (PageKey) o;
+            return Objects.equals(table, that.table) &&
+                    Objects.equals(split, that.split) &&
+                    Objects.equals(request, that.request);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(table, split, request);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.ArrayBlock;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.block.LongArrayBlock;
+import com.facebook.presto.common.block.RowBlock;
+import com.facebook.presto.common.block.VariableWidthBlock;
+import com.facebook.presto.common.type.ArrayType;
+import com.facebook.presto.common.type.DecimalType;
+import com.facebook.presto.common.type.MapType;
+import com.facebook.presto.common.type.RowType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.common.type.TypeSignature;
+import com.facebook.presto.connector.openapi.clientv3.model.ArrayData;
+import com.facebook.presto.connector.openapi.clientv3.model.FixedWidthData;
+import com.facebook.presto.connector.openapi.clientv3.model.MapData;
+import com.facebook.presto.connector.openapi.clientv3.model.PageResult;
+import com.facebook.presto.connector.openapi.clientv3.model.RowData;
+import com.facebook.presto.spi.PrestoException;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebok.presto.connector.openapi.OpenAPITupleDomainConverter.isShortDecimal;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.Decimals.encodeUnscaledValue;
+import static com.facebook.presto.common.type.UuidType.UUID;
+import static com.facebook.presto.common.type.UuidType.javaUuidToPrestoUuid;
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decodes the pages of rows returned by the API into Presto pages.
+ */
+public final class OpenAPIPageDecoder
+{
+    private static final TypeSignature VARCHAR_TYPE_SIGNATURE = TypeSignature.parseTypeSignature("varchar");
+    private static final int FIXED_WIDTH_SIZE = 16;
+
+    private OpenAPIPageDecoder()
+    {
+    }
+
+    /**
+     * Decodes a page of rows, or returns {@literal null} if there are no rows.
+     */
+    public static Page toPage(PageResult pageResult, List<Type> columnTypes)
+    {
+        if (pageResult == null || pageResult.getRowCount() == null || pageResult.getRowCount() == 0) {
+            return null;
+        }
+        int numberOfColumns = requireNonNull(pageResult.getColumnBlocks()).size();
+        checkArgument(numberOfColumns == columnTypes.size(),
+                "columns and type size mismatch in response");
+        if (numberOfColumns == 0) {
+            // request/response with no columns, used for queries like "select count star"
+            return new Page(pageResult.getRowCount());
+        }
+
+        Block[] blocks = new Block[numberOfColumns];
+        for (int i = 0; i < numberOfColumns; i++) {
+            blocks[i] = toPageBlock(pageResult.getColumnBlocks().get(i), columnTypes.get(i));
+        }
+        return new Page(blocks);
+    }
+
+    private static Block toPageBlock(
+            com.facebook.presto.connector.openapi.clientv3.model.Block block,
+            Type columnType)
+    {
+        if (columnType.getTypeSignature().equals(VARCHAR_TYPE_SIGNATURE) || columnType.equals(VARBINARY)) {
+            int numberOfRecords = block.getVarcharData().getSizes().size();
+
+            // Copy the array of nulls flags
+            boolean[] nulls = new boolean[numberOfRecords];
+            for (int i = 0; i < numberOfRecords; i++) {
+                nulls[i] = block.getVarcharData().getNulls().get(i);
+            }
+
+            // Extract the array of sizes
+            int[] sizes = new int[numberOfRecords];
+            for (int i = 0; i < numberOfRecords; i++) {
+                sizes[i] = block.getVarcharData().getSizes().get(i);
+            }
+
+            // Extract the array of bytes
+            byte[] bytes = Base64.getDecoder().decode(block.getVarcharData().getBytes());
+            Slice values = Slices.wrappedBuffer(bytes);
+
+            return new VariableWidthBlock(
+                    numberOfRecords,
+                    values,
+                    calculateOffsets(sizes, nulls, numberOfRecords),
+                    Optional.ofNullable(nulls));
+        }
+        else if (columnType.equals(BIGINT) || isShortDecimal(columnType)) {
+            int numberOfRecords = block.getBigintData().getLongs().size();
+
+            boolean[] nulls = new boolean[numberOfRecords];
+            long[] values = new long[numberOfRecords];
+            for (int i = 0; i < numberOfRecords; i++) {
+                nulls[i] = block.getBigintData().getNulls().get(i);
+                values[i] = nulls[i] ? 0 : block.getBigintData().getLongs().get(i);
+            }
+
+            return new LongArrayBlock(numberOfRecords, Optional.of(nulls), values);
+        }
+        else if (columnType instanceof DecimalType || columnType.equals(UUID)) {
+            FixedWidthData fixedWidthData = block.getFixedWidthData();
+            int numberOfRecords = fixedWidthData.getNulls().size();
+            ByteBuffer bytes = ByteBuffer.wrap(Base64.getDecoder().decode(fixedWidthData.getBytes()));
+            checkArgument(bytes.remaining() == numberOfRecords * FIXED_WIDTH_SIZE,
+                    "expected %s bytes per value in response", FIXED_WIDTH_SIZE);
+
+            // Go through the type to produce its internal 128-bit representation
+            BlockBuilder blockBuilder = columnType.createBlockBuilder(null, numberOfRecords);
+            byte[] value = new byte[FIXED_WIDTH_SIZE];
+            for (int i = 0; i < numberOfRecords; i++) {
+                bytes.get(value);
+                if (fixedWidthData.getNulls().get(i)) {
+                    blockBuilder.appendNull();
+                }
+                else if (columnType.equals(UUID)) {
+                    ByteBuffer uuid = ByteBuffer.wrap(value);
+                    columnType.writeSlice(blockBuilder, javaUuidToPrestoUuid(new java.util.UUID(uuid.getLong(), uuid.getLong())));
+                }
+                else {
+                    columnType.writeSlice(blockBuilder, encodeUnscaledValue(new BigInteger(value)));
+                }
+            }
+            return blockBuilder.build();
+        }
+        else if (columnType instanceof ArrayType) {
+            ArrayData arrayData = block.getArrayData();
+            int numberOfRecords = arrayData.getNulls().size();
+            Block elements = toPageBlock(arrayData.getElements(), ((ArrayType) columnType).getElementType());
+
+            return ArrayBlock.fromElementBlock(
+                    numberOfRecords,
+                    Optional.of(toNulls(arrayData.getNulls())),
+                    toOffsets(arrayData.getOffsets(), numberOfRecords),
+                    elements);
+        }
+        else if (columnType instanceof MapType) {
+            MapType mapType = (MapType) columnType;
+            MapData mapData = block.getMapData();
+            int numberOfRecords = mapData.getNulls().size();
+            Block keys = toPageBlock(mapData.getKeys(), mapType.getKeyType());
+            Block values = toPageBlock(mapData.getValues(), mapType.getValueType());
+
+            return mapType.createBlockFromKeyValue(
+                    numberOfRecords,
+                    Optional.of(toNulls(mapData.getNulls())),
+                    toOffsets(mapData.getOffsets(), numberOfRecords),
+                    keys,
+                    values);
+        }
+        else if (columnType instanceof RowType) {
+            List<Type> fieldTypes = columnType.getTypeParameters();
+            RowData rowData = block.getRowData();
+            int numberOfRecords = rowData.getNulls().size();
+            checkArgument(rowData.getFields().size() == fieldTypes.size(),
+                    "fields and type size mismatch in response");
+
+            // Null rows have no value in the field blocks
+            Block[] fields = new Block[fieldTypes.size()];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = toPageBlock(rowData.getFields().get(i), fieldTypes.get(i));
+            }
+
+            return RowBlock.fromFieldBlocks(numberOfRecords, Optional.of(toNulls(rowData.getNulls())), fields);
+        }
+        else {
+            throw new PrestoException(
+                    OpenAPIErrorCode.OPENAPI_NOT_IMPLEMENTED,
+                    "Unsupported column type: " + columnType.getTypeSignature());
+        }
+    }
+
+    private static boolean[] toNulls(List<Boolean> nulls)
+    {
+        boolean[] result = new boolean[nulls.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = nulls.get(i);
+        }
+        return result;
+    }
+
+    private static int[] toOffsets(List<Integer> offsets, int numberOfRecords)
+    {
+        checkArgument(offsets.size() == numberOfRecords + 1, "expected %s offsets in response", numberOfRecords + 1);
+        int[] result = new int[offsets.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = offsets.get(i);
+        }
+        return result;
+    }
+
+    public static int[] calculateOffsets(int[] sizes, boolean[] nulls, int totalRecords)
+    {
+        if (sizes == null) {
+            return new int[totalRecords + 1];
+        }
+        int[] offsets = new int[totalRecords + 1];
+        offsets[0] = 0;
+        for (int i = 0; i < totalRecords; i++) {
+            int size = nulls != null && nulls[i] ? 0 : sizes[i];
+            offsets[i + 1] = offsets[i] + size;
+        }
+        return offsets;
+    }
+}
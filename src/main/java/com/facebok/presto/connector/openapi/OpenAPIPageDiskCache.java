@@ -0,0 +1,329 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebok.presto.connector.openapi.OpenAPIPageCache.CachedPage;
+import com.facebok.presto.connector.openapi.OpenAPIPageCache.PageKey;
+import com.facebok.presto.connector.openapi.OpenAPIPageCache.TimedPage;
+import com.facebook.airlift.log.Logger;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockEncodingSerde;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import io.airlift.slice.OutputStreamSliceOutput;
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.common.block.BlockSerdeUtil.readBlock;
+import static com.facebook.presto.common.block.BlockSerdeUtil.writeBlock;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Second tier of the page cache, holding the serialized pages in files of a local directory.
+ * The files are memory mapped when read back, so the variable width values are not copied
+ * to the heap. The index of the files only lives in memory, so the page files are deleted on
+ * startup: files left by a previous run, including partially written ones, are never read.
+ * <p>
+ * Pages are written by a single background thread with a bounded queue, so a slow disk never
+ * holds up the queries: pages demoted while the queue is full are dropped.
+ */
+public class OpenAPIPageDiskCache
+{
+    private static final Logger log = Logger.get(OpenAPIPageDiskCache.class);
+
+    private static final String FILE_SUFFIX = ".page";
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int WRITE_QUEUE_SIZE = 64;
+
+    private final Path directory;
+    private final BlockEncodingSerde blockEncodingSerde;
+    private final Ticker ticker;
+    private final Cache<PageKey, DiskEntry> index;
+    private final ExecutorService writeExecutor;
+
+    private final AtomicLong fileIds = new AtomicLong();
+    private final AtomicLong sizeInBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+    private final AtomicLong droppedWrites = new AtomicLong();
+
+    public OpenAPIPageDiskCache(Path directory, long maxSizeBytes, BlockEncodingSerde blockEncodingSerde, Ticker ticker)
+    {
+        this(directory, maxSizeBytes, blockEncodingSerde, ticker, new ThreadPoolExecutor(
+                1,
+                1,
+                0,
+                MILLISECONDS,
+                new ArrayBlockingQueue<>(WRITE_QUEUE_SIZE),
+                daemonThreadsNamed("page-cache-write-%s")));
+    }
+
+    @VisibleForTesting
+    OpenAPIPageDiskCache(Path directory, long maxSizeBytes, BlockEncodingSerde blockEncodingSerde, Ticker ticker, ExecutorService writeExecutor)
+    {
+        this.directory = requireNonNull(directory);
+        this.blockEncodingSerde = requireNonNull(blockEncodingSerde);
+        this.ticker = requireNonNull(ticker);
+        this.writeExecutor = requireNonNull(writeExecutor);
+        this.index = CacheBuilder.newBuilder()
+                .maximumWeight(maxSizeBytes)
+                .weigher((PageKey key, DiskEntry entry) -> (int) Math.min(entry.getSizeInBytes(), Integer.MAX_VALUE))
+                .removalListener(this::deleteFile)
+                .build();
+
+        try {
+            Files.createDirectories(directory);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to create the page cache directory " + directory, e);
+        }
+        deleteFiles();
+    }
+
+    /**
+     * Returns the executor the pages are written on. It rejects the pages it has no room for,
+     * and the caller is expected to drop them.
+     */
+    public Executor getWriteExecutor()
+    {
+        return task -> {
+            try {
+                writeExecutor.execute(task);
+            }
+            catch (RejectedExecutionException e) {
+                droppedWrites.incrementAndGet();
+            }
+        };
+    }
+
+    public void put(PageKey key, TimedPage page)
+    {
+        Path file = directory.resolve(fileIds.incrementAndGet() + FILE_SUFFIX);
+        Path temporaryFile = directory.resolve(file.getFileName() + TEMPORARY_FILE_SUFFIX);
+        try {
+            try (SliceOutput output = new OutputStreamSliceOutput(Files.newOutputStream(temporaryFile), BUFFER_SIZE)) {
+                writePage(output, page.getPage().getPage());
+            }
+            // Only complete files ever have the final name
+            Files.move(temporaryFile, file, ATOMIC_MOVE);
+
+            long size = Files.size(file);
+            sizeInBytes.addAndGet(size);
+            index.put(key, new DiskEntry(file, size, page.getPage().getNextToken(), page.getExpiresAtNanos()));
+        }
+        catch (IOException | RuntimeException e) {
+            writeFailures.incrementAndGet();
+            log.warn(e, "Failed to write page to %s", file);
+            deleteIfExists(temporaryFile);
+            deleteIfExists(file);
+        }
+    }
+
+    public Optional<TimedPage> get(PageKey key)
+    {
+        DiskEntry entry = index.getIfPresent(key);
+        if (entry == null || ticker.read() - entry.getExpiresAtNanos() >= 0) {
+            if (entry != null) {
+                index.invalidate(key);
+            }
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+
+        try (FileChannel channel = FileChannel.open(entry.getFile(), READ)) {
+            // The mapping stays valid after the channel is closed, or the file deleted
+            MappedByteBuffer buffer = channel.map(READ_ONLY, 0, channel.size());
+            Page page = readPage(Slices.wrappedBuffer(buffer).getInput());
+            hits.incrementAndGet();
+            return Optional.of(new TimedPage(new CachedPage(page, entry.getNextToken()), entry.getExpiresAtNanos()));
+        }
+        catch (IOException | RuntimeException e) {
+            // The file may have been evicted concurrently
+            log.debug(e, "Failed to read page from %s", entry.getFile());
+            index.invalidate(key);
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    public void close()
+    {
+        writeExecutor.shutdownNow();
+        index.invalidateAll();
+    }
+
+    private void deleteFiles()
+    {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(FILE_SUFFIX) || name.endsWith(TEMPORARY_FILE_SUFFIX)) {
+                    deleteIfExists(file);
+                }
+                else {
+                    log.warn("Ignoring %s in the page cache directory", file);
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            log.warn(e, "Failed to clean up the page cache directory %s", directory);
+        }
+    }
+
+    private void writePage(SliceOutput output, @Nullable Page page)
+    {
+        output.writeBoolean(page != null);
+        if (page == null) {
+            return;
+        }
+        output.writeInt(page.getPositionCount());
+        output.writeInt(page.getChannelCount());
+        for (int channel = 0; channel < page.getChannelCount(); channel++) {
+            writeBlock(blockEncodingSerde, output, page.getBlock(channel));
+        }
+    }
+
+    @Nullable
+    private Page readPage(SliceInput input)
+    {
+        if (!input.readBoolean()) {
+            return null;
+        }
+        int positionCount = input.readInt();
+        Block[] blocks = new Block[input.readInt()];
+        for (int channel = 0; channel < blocks.length; channel++) {
+            blocks[channel] = readBlock(blockEncodingSerde, input);
+        }
+        return new Page(positionCount, blocks);
+    }
+
+    private void deleteFile(RemovalNotification<PageKey, DiskEntry> notification)
+    {
+        sizeInBytes.addAndGet(-notification.getValue().getSizeInBytes());
+        deleteIfExists(notification.getValue().getFile());
+    }
+
+    private static void deleteIfExists(Path file)
+    {
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+            log.warn(e, "Failed to delete %s", file);
+        }
+    }
+
+    @Managed
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    @Managed
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    @Managed
+    public long getWriteFailures()
+    {
+        return writeFailures.get();
+    }
+
+    @Managed
+    public long getDroppedWrites()
+    {
+        return droppedWrites.get();
+    }
+
+    @Managed
+    public long getSize()
+    {
+        return index.size();
+    }
+
+    @Managed
+    public long getSizeInBytes()
+    {
+        return sizeInBytes.get();
+    }
+
+    private static class DiskEntry
+    {
+        private final Path file;
+        private final long sizeInBytes;
+        private final String nextToken;
+        private final long expiresAtNanos;
+
+        public DiskEntry(Path file, long sizeInBytes, @Nullable String nextToken, long expiresAtNanos)
+        {
+            this.file = requireNonNull(file);
+            this.sizeInBytes = sizeInBytes;
+            this.nextToken = nextToken;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        public Path getFile()
+        {
+            return file;
+        }
+
+        public long getSizeInBytes()
+        {
+            return sizeInBytes;
+        }
+
+        @Nullable
+        public String getNextToken()
+        {
+            return nextToken;
+        }
+
+        public long getExpiresAtNanos()
+        {
+            return expiresAtNanos;
+        }
+    }
+}
@@ -13,29 +13,57 @@
  */
 package com.facebok.presto.connector.openapi;
 
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.SortedRangeSet;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.connector.openapi.clientv3.model.BloomFilter;
 import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ConnectorPageSource;
 import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.ConnectorSplit;
 import com.facebook.presto.spi.ConnectorTableLayoutHandle;
+import com.facebook.presto.spi.FixedPageSource;
+import com.facebook.presto.spi.SchemaTableName;
 import com.facebook.presto.spi.SplitContext;
 import com.facebook.presto.spi.connector.ConnectorPageSourceProvider;
 import com.facebook.presto.spi.connector.ConnectorTransactionHandle;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import static com.facebok.presto.connector.openapi.OpenAPITupleDomainConverter.toOpenAPIBloomFilters;
+import static com.facebok.presto.connector.openapi.OpenAPITupleDomainConverter.toOpenAPITupleDomain;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.Objects.requireNonNull;
 
 public class OpenAPIPageSourceProvider
         implements ConnectorPageSourceProvider
 {
     private final OpenAPIService service;
+    private final OpenAPIPageCache pageCache;
+    private final OpenAPIReplicatedTables replicatedTables;
+    private final int maxInListSize;
+    private final boolean dynamicFilteringEnabled;
+    private final double bloomFilterFalsePositiveProbability;
+    private final int bloomFilterMaxSizeBytes;
 
     @Inject
-    public OpenAPIPageSourceProvider(OpenAPIService service)
+    public OpenAPIPageSourceProvider(
+            OpenAPIService service,
+            OpenAPIPageCache pageCache,
+            OpenAPIReplicatedTables replicatedTables,
+            OpenAPIConnectorConfig config)
     {
         this.service = requireNonNull(service);
+        this.pageCache = requireNonNull(pageCache);
+        this.replicatedTables = requireNonNull(replicatedTables);
+        this.maxInListSize = config.getMaxInListSize();
+        this.dynamicFilteringEnabled = config.isDynamicFilteringEnabled();
+        this.bloomFilterFalsePositiveProbability = config.getBloomFilterFalsePositiveProbability();
+        this.bloomFilterMaxSizeBytes = config.getBloomFilterMaxSizeBytes();
     }
 
     @Override
@@ -47,9 +75,60 @@ public class OpenAPIPageSourceProvider
             List<ColumnHandle> columns,
             SplitContext splitContext)
     {
+        OpenAPITableLayoutHandle layoutHandle = (OpenAPITableLayoutHandle) layout;
+        SchemaTableName tableName = new SchemaTableName(layoutHandle.getSchemaName(), layoutHandle.getTableName());
+        if (replicatedTables.isReplicated(tableName)) {
+            // Presto evaluates the whole constraint on the rows of the local copy
+            return new FixedPageSource(replicatedTables.getPages(tableName, columns.stream()
+                    .map(column -> ((OpenAPIColumnHandle) column).getName())
+                    .collect(toImmutableList())));
+        }
+
+        TupleDomain<ColumnHandle> constraint = layoutHandle.getConstraint();
+        Map<String, BloomFilter> bloomFilters = ImmutableMap.of();
+        if (dynamicFilteringEnabled && splitContext.getDynamicFilterPredicate().isPresent()) {
+            // Only send the rows that can match the build side of the join
+            TupleDomain<ColumnHandle> dynamicFilter = splitContext.getDynamicFilterPredicate().get();
+            constraint = intersect(constraint, dynamicFilter);
+            bloomFilters = toOpenAPIBloomFilters(dynamicFilter, maxInListSize, bloomFilterFalsePositiveProbability, bloomFilterMaxSizeBytes);
+        }
+
         return new OpenAPIPageSource(service,
+                pageCache,
                 (OpenAPIConnectorSplit) split,
                 columns,
-                ((OpenAPITableLayoutHandle) layout).getConstraint());
+                toOpenAPITupleDomain(constraint, maxInListSize),
+                bloomFilters,
+                layoutHandle.getAggregation(),
+                layoutHandle.getSortOrder(),
+                layoutHandle.getLimit());
+    }
+
+    /**
+     * Intersects the layout constraint with the dynamic filter. The domains of the layout may be
+     * enforced by the backend and no longer evaluated by Presto, so a column whose intersection has
+     * too many ranges to be sent, and would be widened to their span, keeps its layout domain.
+     */
+    private TupleDomain<ColumnHandle> intersect(TupleDomain<ColumnHandle> constraint, TupleDomain<ColumnHandle> dynamicFilter)
+    {
+        TupleDomain<ColumnHandle> intersection = constraint.intersect(dynamicFilter);
+        if (intersection.isNone()) {
+            return intersection;
+        }
+
+        Map<ColumnHandle, Domain> layoutDomains = constraint.getDomains().get();
+        Map<ColumnHandle, Domain> domains = new HashMap<>();
+        for (Map.Entry<ColumnHandle, Domain> entry : intersection.getDomains().get().entrySet()) {
+            Domain layoutDomain = layoutDomains.get(entry.getKey());
+            if (layoutDomain != null &&
+                    entry.getValue().getValues() instanceof SortedRangeSet &&
+                    entry.getValue().getValues().getRanges().getRangeCount() > maxInListSize) {
+                domains.put(entry.getKey(), layoutDomain);
+            }
+            else {
+                domains.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return TupleDomain.withColumnDomains(domains);
     }
 }
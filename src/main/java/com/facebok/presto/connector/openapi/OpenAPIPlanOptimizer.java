@@ -0,0 +1,513 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebok.presto.connector.openapi.OpenAPIAggregation.OpenAPIAggregate;
+import com.facebook.presto.common.type.RowType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.connector.openapi.clientv3.model.Aggregate;
+import com.facebook.presto.spi.ColumnHandle;
+import com.facebook.presto.spi.ConnectorPlanOptimizer;
+import com.facebook.presto.spi.ConnectorSession;
+import com.facebook.presto.spi.SchemaTableName;
+import com.facebook.presto.spi.TableHandle;
+import com.facebook.presto.spi.VariableAllocator;
+import com.facebook.presto.spi.plan.AggregationNode;
+import com.facebook.presto.spi.plan.Assignments;
+import com.facebook.presto.spi.plan.LimitNode;
+import com.facebook.presto.spi.plan.OrderingScheme;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.PlanNodeIdAllocator;
+import com.facebook.presto.spi.plan.PlanVisitor;
+import com.facebook.presto.spi.plan.ProjectNode;
+import com.facebook.presto.spi.plan.TableScanNode;
+import com.facebook.presto.spi.plan.TopNNode;
+import com.facebook.presto.spi.relation.CallExpression;
+import com.facebook.presto.spi.relation.ConstantExpression;
+import com.facebook.presto.spi.relation.InputReferenceExpression;
+import com.facebook.presto.spi.relation.LambdaDefinitionExpression;
+import com.facebook.presto.spi.relation.RowExpression;
+import com.facebook.presto.spi.relation.RowExpressionVisitor;
+import com.facebook.presto.spi.relation.SpecialFormExpression;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.spi.plan.AggregationNode.Step.SINGLE;
+import static com.facebook.presto.spi.relation.SpecialFormExpression.Form.DEREFERENCE;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Pushes the parts of the plan that the API can evaluate into the table layout,
+ * so that the backend returns less data.
+ */
+public class OpenAPIPlanOptimizer
+        implements ConnectorPlanOptimizer
+{
+    private static final String AGGREGATE_COLUMN_PREFIX = "$agg";
+
+    private final OpenAPIMetadata metadata;
+
+    @Inject
+    public OpenAPIPlanOptimizer(OpenAPIMetadata metadata)
+    {
+        this.metadata = requireNonNull(metadata);
+    }
+
+    @Override
+    public PlanNode optimize(
+            PlanNode maxSubplan,
+            ConnectorSession session,
+            VariableAllocator variableAllocator,
+            PlanNodeIdAllocator idAllocator)
+    {
+        return maxSubplan.accept(new Rewriter(variableAllocator), null);
+    }
+
+    private class Rewriter
+            extends PlanVisitor<PlanNode, Void>
+    {
+        private final VariableAllocator variableAllocator;
+
+        public Rewriter(VariableAllocator variableAllocator)
+        {
+            this.variableAllocator = requireNonNull(variableAllocator);
+        }
+
+        @Override
+        public PlanNode visitPlan(PlanNode node, Void context)
+        {
+            List<PlanNode> sources = node.getSources().stream()
+                    .map(source -> source.accept(this, null))
+                    .collect(toImmutableList());
+            if (sources.equals(node.getSources())) {
+                return node;
+            }
+            return node.replaceChildren(sources);
+        }
+
+        @Override
+        public PlanNode visitLimit(LimitNode node, Void context)
+        {
+            PlanNode source = node.getSource().accept(this, null);
+            if (source instanceof TableScanNode) {
+                Optional<OpenAPITableLayoutHandle> layout = getLayout((TableScanNode) source);
+                if (layout.isPresent()) {
+                    // Each split returns at most the limit, the limit node stays to apply
+                    // it across splits, so the limit is never guaranteed by the connector
+                    source = withLayout((TableScanNode) source, layout.get().withLimit(node.getCount()));
+                }
+            }
+            if (source == node.getSource()) {
+                return node;
+            }
+            return node.replaceChildren(ImmutableList.of(source));
+        }
+
+        @Override
+        public PlanNode visitTopN(TopNNode node, Void context)
+        {
+            PlanNode source = node.getSource().accept(this, null);
+            if (source instanceof TableScanNode) {
+                Optional<OpenAPITableLayoutHandle> layout = getTopNLayout(node, (TableScanNode) source);
+                if (layout.isPresent()) {
+                    // Each split returns its own top N, the TopN node stays to merge them
+                    source = withLayout((TableScanNode) source, layout.get());
+                }
+            }
+            if (source == node.getSource()) {
+                return node;
+            }
+            return node.replaceChildren(ImmutableList.of(source));
+        }
+
+        @Override
+        public PlanNode visitProject(ProjectNode node, Void context)
+        {
+            PlanNode source = node.getSource().accept(this, null);
+            if (source instanceof TableScanNode) {
+                Optional<ProjectNode> projection = pushDereferences(node, (TableScanNode) source, variableAllocator);
+                if (projection.isPresent()) {
+                    return projection.get();
+                }
+            }
+            if (source == node.getSource()) {
+                return node;
+            }
+            return node.replaceChildren(ImmutableList.of(source));
+        }
+
+        @Override
+        public PlanNode visitAggregation(AggregationNode node, Void context)
+        {
+            PlanNode source = node.getSource().accept(this, null);
+            if (source instanceof TableScanNode) {
+                Optional<TableScanNode> aggregatedTableScan = pushAggregation(node, (TableScanNode) source);
+                if (aggregatedTableScan.isPresent()) {
+                    return aggregatedTableScan.get();
+                }
+            }
+            if (source == node.getSource()) {
+                return node;
+            }
+            return node.replaceChildren(ImmutableList.of(source));
+        }
+    }
+
+    private Optional<OpenAPITableLayoutHandle> getTopNLayout(TopNNode topN, TableScanNode tableScan)
+    {
+        Optional<OpenAPITableLayoutHandle> layout = getLayout(tableScan);
+        if (!layout.isPresent() ||
+                !layout.get().getSortOrder().isEmpty() ||
+                layout.get().getLimit().isPresent() ||
+                !supportsPushdown(layout.get(), OpenAPIPushdown.TOP_N)) {
+            return Optional.empty();
+        }
+
+        OrderingScheme orderingScheme = topN.getOrderingScheme();
+        ImmutableList.Builder<OpenAPISortItem> sortOrder = ImmutableList.builder();
+        for (VariableReferenceExpression variable : orderingScheme.getOrderByVariables()) {
+            OpenAPIColumnHandle column = (OpenAPIColumnHandle) tableScan.getAssignments().get(variable);
+            // The backend needs to order the values exactly like Presto does
+            if (column == null || !column.getSubfields().isEmpty() || !isPushdownType(column.getType())) {
+                return Optional.empty();
+            }
+            sortOrder.add(new OpenAPISortItem(column.getName(), orderingScheme.getOrdering(variable)));
+        }
+        return Optional.of(layout.get().withTopN(sortOrder.build(), topN.getCount()));
+    }
+
+    /**
+     * Replaces the aggregation by a scan of the rows aggregated by the backend. Each group is
+     * returned by exactly one split, so there is nothing left for Presto to aggregate.
+     */
+    private Optional<TableScanNode> pushAggregation(AggregationNode aggregation, TableScanNode tableScan)
+    {
+        Optional<OpenAPITableLayoutHandle> layout = getLayout(tableScan);
+        if (!layout.isPresent() ||
+                layout.get().getAggregation().isPresent() ||
+                layout.get().getLimit().isPresent() ||
+                !supportsPushdown(layout.get(), OpenAPIPushdown.AGGREGATION)) {
+            return Optional.empty();
+        }
+        if (aggregation.getStep() != SINGLE ||
+                aggregation.getGroupingSetCount() != 1 ||
+                aggregation.getHashVariable().isPresent() ||
+                aggregation.getGroupIdVariable().isPresent()) {
+            return Optional.empty();
+        }
+
+        Map<VariableReferenceExpression, ColumnHandle> tableAssignments = tableScan.getAssignments();
+        ImmutableMap.Builder<VariableReferenceExpression, ColumnHandle> assignments = ImmutableMap.builder();
+
+        ImmutableList.Builder<String> groupingKeys = ImmutableList.builder();
+        for (VariableReferenceExpression groupingKey : aggregation.getGroupingKeys()) {
+            OpenAPIColumnHandle column = (OpenAPIColumnHandle) tableAssignments.get(groupingKey);
+            if (column == null || !column.getSubfields().isEmpty() || !isPushdownType(column.getType())) {
+                return Optional.empty();
+            }
+            groupingKeys.add(column.getName());
+            assignments.put(groupingKey, column);
+        }
+
+        ImmutableList.Builder<OpenAPIAggregate> aggregates = ImmutableList.builder();
+        int aggregateIndex = 0;
+        for (Map.Entry<VariableReferenceExpression, AggregationNode.Aggregation> entry : aggregation.getAggregations().entrySet()) {
+            String name = AGGREGATE_COLUMN_PREFIX + aggregateIndex++;
+            Optional<OpenAPIAggregate> aggregate = toOpenAPIAggregate(name, entry.getValue(), tableAssignments);
+            if (!aggregate.isPresent() || !isPushdownType(entry.getKey().getType())) {
+                return Optional.empty();
+            }
+            aggregates.add(aggregate.get());
+            assignments.put(entry.getKey(), new OpenAPIColumnHandle(name, entry.getKey().getType()));
+        }
+
+        Map<VariableReferenceExpression, ColumnHandle> aggregatedAssignments = assignments.build();
+        OpenAPITableLayoutHandle aggregatedLayout = layout.get().withAggregation(
+                ImmutableSet.copyOf(aggregatedAssignments.values()),
+                new OpenAPIAggregation(groupingKeys.build(), aggregates.build()));
+
+        return Optional.of(withLayout(tableScan, aggregatedLayout, aggregation.getOutputVariables(), aggregatedAssignments));
+    }
+
+    private static Optional<OpenAPIAggregate> toOpenAPIAggregate(
+            String name,
+            AggregationNode.Aggregation aggregation,
+            Map<VariableReferenceExpression, ColumnHandle> assignments)
+    {
+        if (aggregation.isDistinct() ||
+                aggregation.getFilter().isPresent() ||
+                aggregation.getOrderBy().isPresent() ||
+                aggregation.getMask().isPresent()) {
+            return Optional.empty();
+        }
+
+        CallExpression call = aggregation.getCall();
+        Optional<OpenAPIColumnHandle> column = Optional.empty();
+        if (call.getArguments().size() == 1 && call.getArguments().get(0) instanceof VariableReferenceExpression) {
+            column = Optional.ofNullable((OpenAPIColumnHandle) assignments.get((VariableReferenceExpression) call.getArguments().get(0)));
+            if (!column.isPresent() || !column.get().getSubfields().isEmpty()) {
+                return Optional.empty();
+            }
+        }
+        else if (!call.getArguments().isEmpty()) {
+            return Optional.empty();
+        }
+
+        Aggregate.FunctionEnum function;
+        switch (call.getDisplayName()) {
+            case "count":
+                function = Aggregate.FunctionEnum.COUNT;
+                break;
+            case "min":
+                function = Aggregate.FunctionEnum.MIN;
+                break;
+            case "max":
+                function = Aggregate.FunctionEnum.MAX;
+                break;
+            case "sum":
+                if (!column.isPresent() || !column.get().getType().equals(BIGINT)) {
+                    return Optional.empty();
+                }
+                function = Aggregate.FunctionEnum.SUM;
+                break;
+            default:
+                return Optional.empty();
+        }
+        if (function != Aggregate.FunctionEnum.COUNT && !column.isPresent()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new OpenAPIAggregate(name, function, column.map(OpenAPIColumnHandle::getName)));
+    }
+
+    /**
+     * Replaces the dereferences of ROW columns in the projections by columns reading only the
+     * nested fields, so that the backend does not return the whole ROW values.
+     */
+    private Optional<ProjectNode> pushDereferences(ProjectNode project, TableScanNode tableScan, VariableAllocator variableAllocator)
+    {
+        Optional<OpenAPITableLayoutHandle> layout = getLayout(tableScan);
+        if (!layout.isPresent() ||
+                layout.get().getAggregation().isPresent() ||
+                !supportsPushdown(layout.get(), OpenAPIPushdown.DEREFERENCE)) {
+            return Optional.empty();
+        }
+
+        DereferenceRewriter rewriter = new DereferenceRewriter(tableScan.getAssignments(), variableAllocator);
+        Assignments.Builder projections = Assignments.builder();
+        for (Map.Entry<VariableReferenceExpression, RowExpression> entry : project.getAssignments().entrySet()) {
+            projections.put(entry.getKey(), entry.getValue().accept(rewriter, null));
+        }
+        if (rewriter.getSubfieldColumns().isEmpty()) {
+            return Optional.empty();
+        }
+
+        // The columns still read as a whole, followed by the nested fields
+        ImmutableList.Builder<VariableReferenceExpression> outputVariables = ImmutableList.builder();
+        ImmutableMap.Builder<VariableReferenceExpression, ColumnHandle> assignments = ImmutableMap.builder();
+        for (VariableReferenceExpression variable : tableScan.getOutputVariables()) {
+            if (rewriter.getReferencedVariables().contains(variable)) {
+                outputVariables.add(variable);
+                assignments.put(variable, tableScan.getAssignments().get(variable));
+            }
+        }
+        for (Map.Entry<OpenAPIColumnHandle, VariableReferenceExpression> entry : rewriter.getSubfieldColumns().entrySet()) {
+            outputVariables.add(entry.getValue());
+            assignments.put(entry.getValue(), entry.getKey());
+        }
+
+        Map<VariableReferenceExpression, ColumnHandle> projectedAssignments = assignments.build();
+        OpenAPITableLayoutHandle projectedLayout = layout.get().withDesiredColumns(ImmutableSet.copyOf(projectedAssignments.values()));
+        return Optional.of(new ProjectNode(
+                project.getSourceLocation(),
+                project.getId(),
+                withLayout(tableScan, projectedLayout, outputVariables.build(), projectedAssignments),
+                projections.build(),
+                project.getLocality()));
+    }
+
+    /**
+     * Replaces the outermost dereference chains over the columns of the table by new variables.
+     */
+    private static class DereferenceRewriter
+            implements RowExpressionVisitor<RowExpression, Void>
+    {
+        private final Map<VariableReferenceExpression, ColumnHandle> assignments;
+        private final VariableAllocator variableAllocator;
+        private final Map<OpenAPIColumnHandle, VariableReferenceExpression> subfieldColumns = new LinkedHashMap<>();
+        private final Set<VariableReferenceExpression> referencedVariables = new HashSet<>();
+
+        public DereferenceRewriter(Map<VariableReferenceExpression, ColumnHandle> assignments, VariableAllocator variableAllocator)
+        {
+            this.assignments = requireNonNull(assignments);
+            this.variableAllocator = requireNonNull(variableAllocator);
+        }
+
+        public Map<OpenAPIColumnHandle, VariableReferenceExpression> getSubfieldColumns()
+        {
+            return subfieldColumns;
+        }
+
+        public Set<VariableReferenceExpression> getReferencedVariables()
+        {
+            return referencedVariables;
+        }
+
+        @Override
+        public RowExpression visitSpecialForm(SpecialFormExpression specialForm, Void context)
+        {
+            if (specialForm.getForm() == DEREFERENCE) {
+                Optional<OpenAPIColumnHandle> column = toSubfieldColumn(specialForm);
+                if (column.isPresent()) {
+                    return subfieldColumns.computeIfAbsent(column.get(), subfieldColumn -> variableAllocator.newVariable(
+                            subfieldColumn.getSubfields().get(subfieldColumn.getSubfields().size() - 1),
+                            subfieldColumn.getType()));
+                }
+            }
+            return new SpecialFormExpression(
+                    specialForm.getSourceLocation(),
+                    specialForm.getForm(),
+                    specialForm.getType(),
+                    rewriteArguments(specialForm.getArguments()));
+        }
+
+        @Override
+        public RowExpression visitCall(CallExpression call, Void context)
+        {
+            return new CallExpression(
+                    call.getSourceLocation(),
+                    call.getDisplayName(),
+                    call.getFunctionHandle(),
+                    call.getType(),
+                    rewriteArguments(call.getArguments()));
+        }
+
+        @Override
+        public RowExpression visitVariableReference(VariableReferenceExpression variable, Void context)
+        {
+            referencedVariables.add(variable);
+            return variable;
+        }
+
+        @Override
+        public RowExpression visitLambda(LambdaDefinitionExpression lambda, Void context)
+        {
+            // The body only references the lambda arguments, captured values are bound outside
+            return lambda;
+        }
+
+        @Override
+        public RowExpression visitInputReference(InputReferenceExpression input, Void context)
+        {
+            return input;
+        }
+
+        @Override
+        public RowExpression visitConstant(ConstantExpression constant, Void context)
+        {
+            return constant;
+        }
+
+        private List<RowExpression> rewriteArguments(List<RowExpression> arguments)
+        {
+            return arguments.stream()
+                    .map(argument -> argument.accept(this, null))
+                    .collect(toImmutableList());
+        }
+
+        private Optional<OpenAPIColumnHandle> toSubfieldColumn(RowExpression expression)
+        {
+            if (expression instanceof VariableReferenceExpression) {
+                return Optional.ofNullable((OpenAPIColumnHandle) assignments.get(expression));
+            }
+            if (!(expression instanceof SpecialFormExpression) || ((SpecialFormExpression) expression).getForm() != DEREFERENCE) {
+                return Optional.empty();
+            }
+
+            SpecialFormExpression dereference = (SpecialFormExpression) expression;
+            RowExpression base = dereference.getArguments().get(0);
+            Object index = ((ConstantExpression) dereference.getArguments().get(1)).getValue();
+            // Anonymous fields can not be named in the request
+            Optional<String> field = ((RowType) base.getType()).getFields().get(toIntExact((Long) index)).getName();
+            if (!field.isPresent()) {
+                return Optional.empty();
+            }
+            return toSubfieldColumn(base).map(column -> column.withSubfield(field.get(), dereference.getType()));
+        }
+    }
+
+    private boolean supportsPushdown(OpenAPITableLayoutHandle layout, OpenAPIPushdown pushdown)
+    {
+        SchemaTableName tableName = new SchemaTableName(layout.getSchemaName(), layout.getTableName());
+        if (metadata.isReplicated(tableName)) {
+            // Scans of replicated tables are served from the full local copy
+            return false;
+        }
+        return metadata.getOpenAPITableMetadata(tableName)
+                .map(table -> table.supportsPushdown(pushdown))
+                .orElse(false);
+    }
+
+    private static boolean isPushdownType(Type type)
+    {
+        // Deliberately narrower than what the page source decodes: the API only defines how
+        // varchar and bigint values compare (see the SortItem schema), which sorting, grouping
+        // and MIN/MAX all depend on
+        return type.equals(VARCHAR) || type.equals(BIGINT);
+    }
+
+    private static Optional<OpenAPITableLayoutHandle> getLayout(TableScanNode tableScan)
+    {
+        return tableScan.getTable().getLayout()
+                .filter(OpenAPITableLayoutHandle.class::isInstance)
+                .map(OpenAPITableLayoutHandle.class::cast);
+    }
+
+    private static TableScanNode withLayout(TableScanNode tableScan, OpenAPITableLayoutHandle layout)
+    {
+        return withLayout(tableScan, layout, tableScan.getOutputVariables(), tableScan.getAssignments());
+    }
+
+    private static TableScanNode withLayout(
+            TableScanNode tableScan,
+            OpenAPITableLayoutHandle layout,
+            List<VariableReferenceExpression> outputVariables,
+            Map<VariableReferenceExpression, ColumnHandle> assignments)
+    {
+        TableHandle table = tableScan.getTable();
+        return new TableScanNode(
+                tableScan.getSourceLocation(),
+                tableScan.getId(),
+                new TableHandle(table.getConnectorId(), table.getConnectorHandle(), table.getTransaction(), Optional.of(layout)),
+                outputVariables,
+                assignments,
+                tableScan.getTableConstraints(),
+                tableScan.getCurrentConstraint(),
+                tableScan.getEnforcedConstraint());
+    }
+}
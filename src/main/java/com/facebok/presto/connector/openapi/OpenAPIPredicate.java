@@ -0,0 +1,26 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+/**
+ * Kinds of predicates that a backend can advertise in the {@code enforcedPredicates} of a
+ * column, meaning that they don't need to be evaluated again by Presto.
+ */
+public enum OpenAPIPredicate
+{
+    EQUALITY,
+    IN_LIST,
+    RANGE,
+    NULL_CHECK,
+}
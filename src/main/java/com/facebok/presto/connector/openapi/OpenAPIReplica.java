@@ -0,0 +1,185 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.airlift.log.Logger;
+import com.google.common.base.Ticker;
+import org.weakref.jmx.Managed;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Tracks the health and observed latency of a single backend replica.
+ */
+public class OpenAPIReplica
+{
+    private static final Logger log = Logger.get(OpenAPIReplica.class);
+
+    // Weight of the most recent sample in the latency moving average
+    private static final double EWMA_ALPHA = 0.2;
+    // Failed requests, often fast ones such as connection refused, count as this much slower
+    // than the average, and at least the minimum, so that they never make a replica look faster
+    private static final double FAILURE_LATENCY_PENALTY = 4;
+    private static final long MIN_FAILURE_LATENCY_NANOS = MILLISECONDS.toNanos(100);
+
+    private final URI uri;
+    private final int ejectionFailureThreshold;
+    private final long ejectionDurationNanos;
+    private final Ticker ticker;
+
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong totalRequests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private final AtomicLong ejections = new AtomicLong();
+
+    private volatile long ejectedUntilNanos;
+    private volatile boolean ejected;
+
+    // Guarded by this
+    private double latencyEwmaNanos;
+
+    public OpenAPIReplica(URI uri, int ejectionFailureThreshold, long ejectionDurationNanos, Ticker ticker)
+    {
+        this.uri = requireNonNull(uri);
+        this.ejectionFailureThreshold = ejectionFailureThreshold;
+        this.ejectionDurationNanos = ejectionDurationNanos;
+        this.ticker = requireNonNull(ticker);
+    }
+
+    public URI getUri()
+    {
+        return uri;
+    }
+
+    /**
+     * Returns true if the replica was taken out of rotation and the ejection period did not pass yet.
+     */
+    @Managed
+    public boolean isEjected()
+    {
+        return ejected && ticker.read() - ejectedUntilNanos < 0;
+    }
+
+    /**
+     * Returns the expected cost of sending one more request to this replica. Replicas
+     * without latency samples yet have the lowest cost so that they get probed first.
+     */
+    public double getLoad()
+    {
+        return (getLatencyEwmaNanos() + 1) * (inFlightRequests.get() + 1);
+    }
+
+    public void requestStarted()
+    {
+        inFlightRequests.incrementAndGet();
+        totalRequests.incrementAndGet();
+    }
+
+    public void requestFinished(long elapsedNanos, boolean failed)
+    {
+        inFlightRequests.decrementAndGet();
+
+        if (!failed) {
+            recordLatency(elapsedNanos);
+            consecutiveFailures.set(0);
+            return;
+        }
+
+        recordFailureLatency(elapsedNanos);
+        failedRequests.incrementAndGet();
+        if (consecutiveFailures.incrementAndGet() >= ejectionFailureThreshold) {
+            consecutiveFailures.set(0);
+            ejectedUntilNanos = ticker.read() + ejectionDurationNanos;
+            ejected = true;
+            ejections.incrementAndGet();
+            log.warn("Ejecting replica %s for %d ms after %d consecutive failures",
+                    uri, NANOSECONDS.toMillis(ejectionDurationNanos), ejectionFailureThreshold);
+        }
+    }
+
+    private synchronized void recordLatency(long elapsedNanos)
+    {
+        if (latencyEwmaNanos == 0) {
+            latencyEwmaNanos = elapsedNanos;
+        }
+        else {
+            latencyEwmaNanos = EWMA_ALPHA * elapsedNanos + (1 - EWMA_ALPHA) * latencyEwmaNanos;
+        }
+    }
+
+    private synchronized void recordFailureLatency(long elapsedNanos)
+    {
+        double penaltyNanos = Math.max(MIN_FAILURE_LATENCY_NANOS, latencyEwmaNanos * FAILURE_LATENCY_PENALTY);
+        recordLatency((long) Math.max(elapsedNanos, penaltyNanos));
+    }
+
+    private synchronized double getLatencyEwmaNanos()
+    {
+        return latencyEwmaNanos;
+    }
+
+    @Managed
+    public String getBaseUrl()
+    {
+        return uri.toString();
+    }
+
+    @Managed
+    public double getLatencyEwmaMillis()
+    {
+        return getLatencyEwmaNanos() / 1_000_000;
+    }
+
+    @Managed
+    public int getInFlightRequests()
+    {
+        return inFlightRequests.get();
+    }
+
+    @Managed
+    public long getTotalRequests()
+    {
+        return totalRequests.get();
+    }
+
+    @Managed
+    public long getFailedRequests()
+    {
+        return failedRequests.get();
+    }
+
+    @Managed
+    public long getEjections()
+    {
+        return ejections.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "OpenAPIReplica{" +
+                "uri=" + uri +
+                ", inFlightRequests=" + inFlightRequests +
+                ", latencyEwmaMillis=" + getLatencyEwmaMillis() +
+                ", ejected=" + isEjected() +
+                '}';
+    }
+}
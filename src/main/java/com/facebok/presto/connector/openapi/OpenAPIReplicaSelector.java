@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Client side load balancer across the replicas of the same backend. Uses the "power of
+ * two choices" strategy: two random healthy replicas are picked and the request goes to
+ * the one with the lowest product of latency moving average and in-flight requests.
+ */
+public class OpenAPIReplicaSelector
+{
+    private final List<OpenAPIReplica> replicas;
+
+    @Inject
+    public OpenAPIReplicaSelector(OpenAPIConnectorConfig config)
+    {
+        this(config, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    OpenAPIReplicaSelector(OpenAPIConnectorConfig config, Ticker ticker)
+    {
+        List<String> baseUrls = config.getBaseUrls();
+        checkArgument(!baseUrls.isEmpty(), "at least one base URL is required");
+
+        ImmutableList.Builder<OpenAPIReplica> replicas = ImmutableList.builder();
+        for (String baseUrl : baseUrls) {
+            replicas.add(new OpenAPIReplica(URI.create(baseUrl),
+                    config.getReplicaEjectionFailureThreshold(),
+                    MILLISECONDS.toNanos(config.getReplicaEjectionDurationMs()),
+                    ticker));
+        }
+        this.replicas = replicas.build();
+    }
+
+    public List<OpenAPIReplica> getReplicas()
+    {
+        return replicas;
+    }
+
+    public OpenAPIReplica select()
+    {
+        if (replicas.size() == 1) {
+            return replicas.get(0);
+        }
+
+        List<OpenAPIReplica> candidates = new ArrayList<>(replicas.size());
+        for (OpenAPIReplica replica : replicas) {
+            if (!replica.isEjected()) {
+                candidates.add(replica);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // All replicas are ejected, fail open rather than rejecting every request
+            candidates = replicas;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        OpenAPIReplica firstReplica = candidates.get(first);
+        OpenAPIReplica secondReplica = candidates.get(second);
+        return firstReplica.getLoad() <= secondReplica.getLoad() ? firstReplica : secondReplica;
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebok.presto.connector.openapi.annotations.ForMetadataRefresh;
+import com.facebook.airlift.log.Logger;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.common.type.TypeManager;
+import com.facebook.presto.connector.openapi.clientv3.model.PageResult;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemaTable;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableChangesPostRequest;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsPostRequest;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsSplitRowsPostRequest;
+import com.facebook.presto.connector.openapi.clientv3.model.TableChanges;
+import com.facebook.presto.connector.openapi.clientv3.model.TableMetadata;
+import com.facebook.presto.spi.ColumnMetadata;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.SchemaTableName;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.inject.Inject;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.IntStream;
+
+import static com.facebok.presto.connector.openapi.OpenAPIPageDecoder.toPage;
+import static com.facebook.presto.common.type.TypeUtils.readNativeValue;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Full in-memory copies of small tables, kept by each worker so that their scans don't
+ * call the backend. A copy is loaded on the first scan and refreshed in the background
+ * after the refresh interval, unless the version of the table did not change. Tables with
+ * a primary key are refreshed from the change feed of the backend when it supports one.
+ */
+public class OpenAPIReplicatedTables
+{
+    private static final Logger log = Logger.get(OpenAPIReplicatedTables.class);
+
+    // Copies of tables no longer scanned are dropped after this many refresh intervals
+    private static final int EXPIRE_AFTER_REFRESH_INTERVALS = 10;
+
+    private final OpenAPIService service;
+    private final TypeManager typeManager;
+    private final Set<SchemaTableName> tables;
+    private final LoadingCache<SchemaTableName, ReplicatedTable> cache;
+    private final Set<SchemaTableName> changeFeedUnsupported = ConcurrentHashMap.newKeySet();
+
+    @Inject
+    public OpenAPIReplicatedTables(
+            OpenAPIService service,
+            OpenAPIConnectorConfig config,
+            TypeManager typeManager,
+            @ForMetadataRefresh ExecutorService refreshExecutor)
+    {
+        this(service, config, typeManager, refreshExecutor, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    OpenAPIReplicatedTables(
+            OpenAPIService service,
+            OpenAPIConnectorConfig config,
+            TypeManager typeManager,
+            ExecutorService refreshExecutor,
+            Ticker ticker)
+    {
+        this.service = requireNonNull(service);
+        this.typeManager = requireNonNull(typeManager);
+        this.tables = ImmutableSet.copyOf(config.getReplicatedTables());
+
+        long refreshIntervalMs = config.getReplicatedTablesRefreshIntervalMs();
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(refreshIntervalMs * EXPIRE_AFTER_REFRESH_INTERVALS, MILLISECONDS)
+                .refreshAfterWrite(refreshIntervalMs, MILLISECONDS)
+                .ticker(ticker)
+                .build(CacheLoader.asyncReloading(new CacheLoader<SchemaTableName, ReplicatedTable>()
+                {
+                    @Override
+                    public ReplicatedTable load(SchemaTableName table)
+                    {
+                        return fetchTable(table, null);
+                    }
+
+                    @Override
+                    public ReplicatedTable reload(SchemaTableName table, ReplicatedTable previous)
+                    {
+                        return fetchTable(table, previous);
+                    }
+                }, refreshExecutor));
+    }
+
+    public boolean isReplicated(SchemaTableName table)
+    {
+        return tables.contains(table);
+    }
+
+    /**
+     * Returns the pages of the local copy of the table, with only the requested columns.
+     */
+    public List<Page> getPages(SchemaTableName table, List<String> columnNames)
+    {
+        ReplicatedTable replicatedTable;
+        try {
+            replicatedTable = cache.getUnchecked(table);
+        }
+        catch (UncheckedExecutionException e) {
+            throwIfUnchecked(e.getCause());
+            throw e;
+        }
+        return replicatedTable.getPages(columnNames);
+    }
+
+    private ReplicatedTable fetchTable(SchemaTableName table, @Nullable ReplicatedTable previous)
+    {
+        TableMetadata metadata = service.getTableMetadata(new SchemaTable()
+                .schema(table.getSchemaName())
+                .table(table.getTableName()));
+        if (previous != null && metadata.getVersion() != null && metadata.getVersion().equals(previous.getVersion())) {
+            return previous;
+        }
+
+        OpenAPITableMetadata tableMetadata = new OpenAPITableMetadata(metadata, typeManager);
+        List<String> columnNames = tableMetadata.getColumns().stream()
+                .map(ColumnMetadata::getName)
+                .collect(toImmutableList());
+        List<Type> columnTypes = tableMetadata.getColumns().stream()
+                .map(ColumnMetadata::getType)
+                .collect(toImmutableList());
+
+        // The rows of the previous copy can only be matched to the changes by the primary key,
+        // an indexable key may be shared by several rows
+        if (previous != null &&
+                previous.getVersion() != null &&
+                !tableMetadata.getPrimaryKey().isEmpty() &&
+                previous.getColumnNames().equals(columnNames) &&
+                previous.getColumnTypes().equals(columnTypes) &&
+                !changeFeedUnsupported.contains(table)) {
+            Optional<ReplicatedTable> updated = fetchChanges(table, previous, tableMetadata.getPrimaryKey());
+            if (updated.isPresent()) {
+                return updated.get();
+            }
+        }
+
+        List<String> splits = service.getSplits(table.getSchemaName(), table.getTableName(), new SchemasSchemaTablesTableSplitsPostRequest()
+                .desiredColumns(columnNames))
+                .getSplits();
+
+        ImmutableList.Builder<Page> pages = ImmutableList.builder();
+        long rowCount = 0;
+        long sizeInBytes = 0;
+        for (String split : splits) {
+            String nextToken = null;
+            do {
+                PageResult pageResult = service.getPageRows(table.getSchemaName(), table.getTableName(), split, new SchemasSchemaTablesTableSplitsSplitRowsPostRequest()
+                        .desiredColumns(columnNames)
+                        .nextToken(nextToken));
+                Page page = toPage(pageResult, columnTypes);
+                if (page != null) {
+                    pages.add(page);
+                    rowCount += page.getPositionCount();
+                    sizeInBytes += page.getRetainedSizeInBytes();
+                }
+                nextToken = pageResult.getNextToken();
+            }
+            while (nextToken != null);
+        }
+
+        log.info("Refreshed replicated table %s: %d rows, %d bytes, version %s", table, rowCount, sizeInBytes, metadata.getVersion());
+        return new ReplicatedTable(columnNames, columnTypes, pages.build(), metadata.getVersion());
+    }
+
+    /**
+     * Applies the changes since the version of the previous copy, or returns empty if the
+     * backend can't provide them and the whole table has to be read again.
+     */
+    private Optional<ReplicatedTable> fetchChanges(SchemaTableName table, ReplicatedTable previous, List<String> keyColumns)
+    {
+        List<Type> keyTypes = keyColumns.stream()
+                .map(previous::getColumnType)
+                .collect(toImmutableList());
+
+        ImmutableList.Builder<Page> upserts = ImmutableList.builder();
+        ImmutableList.Builder<Page> deletes = ImmutableList.builder();
+        String version = null;
+        String nextToken = null;
+        try {
+            do {
+                TableChanges changes = service.getTableChanges(table.getSchemaName(), table.getTableName(), new SchemasSchemaTablesTableChangesPostRequest()
+                        .sinceVersion(previous.getVersion())
+                        .keyColumns(keyColumns)
+                        .desiredColumns(previous.getColumnNames())
+                        .nextToken(nextToken));
+                if (changes.getUpserts() != null) {
+                    Page page = toPage(changes.getUpserts(), previous.getColumnTypes());
+                    if (page != null) {
+                        upserts.add(page);
+                    }
+                }
+                if (changes.getDeletes() != null) {
+                    Page page = toPage(changes.getDeletes(), keyTypes);
+                    if (page != null) {
+                        deletes.add(page);
+                    }
+                }
+                version = changes.getVersion();
+                nextToken = changes.getNextToken();
+            }
+            while (nextToken != null);
+        }
+        catch (OpenAPIServiceException e) {
+            if (e.getStatusCode() == 404) {
+                log.info("Change feed not supported for replicated table %s, reading the whole table on refresh", table);
+                changeFeedUnsupported.add(table);
+            }
+            else if (e.getStatusCode() == 410) {
+                // Expected once the backend no longer keeps the changes since that version
+                log.debug("Version %s of replicated table %s is too old for the change feed, reading the whole table", previous.getVersion(), table);
+            }
+            else {
+                log.warn(e, "Failed to get the changes of replicated table %s since version %s, reading the whole table", table, previous.getVersion());
+            }
+            return Optional.empty();
+        }
+
+        if (version == null) {
+            log.warn("Change feed of replicated table %s returned no version, reading the whole table", table);
+            return Optional.empty();
+        }
+
+        ReplicatedTable updated = previous.applyChanges(keyColumns, upserts.build(), deletes.build(), version);
+        log.debug("Applied changes to replicated table %s: version %s -> %s", table, previous.getVersion(), version);
+        return Optional.of(updated);
+    }
+
+    private static class ReplicatedTable
+    {
+        private final List<String> columnNames;
+        private final List<Type> columnTypes;
+        private final Map<String, Integer> channels;
+        private final List<Page> pages;
+        private final String version;
+
+        public ReplicatedTable(List<String> columnNames, List<Type> columnTypes, List<Page> pages, @Nullable String version)
+        {
+            this.columnNames = ImmutableList.copyOf(columnNames);
+            this.columnTypes = ImmutableList.copyOf(columnTypes);
+            ImmutableMap.Builder<String, Integer> channels = ImmutableMap.builder();
+            for (int i = 0; i < columnNames.size(); i++) {
+                channels.put(columnNames.get(i), i);
+            }
+            this.channels = channels.build();
+            this.pages = requireNonNull(pages);
+            this.version = version;
+        }
+
+        @Nullable
+        public String getVersion()
+        {
+            return version;
+        }
+
+        public List<String> getColumnNames()
+        {
+            return columnNames;
+        }
+
+        public List<Type> getColumnTypes()
+        {
+            return columnTypes;
+        }
+
+        public Type getColumnType(String columnName)
+        {
+            return columnTypes.get(getChannel(columnName));
+        }
+
+        public List<Page> getPages(List<String> columnNames)
+        {
+            int[] columnChannels = new int[columnNames.size()];
+            for (int i = 0; i < columnChannels.length; i++) {
+                columnChannels[i] = getChannel(columnNames.get(i));
+            }
+
+            ImmutableList.Builder<Page> result = ImmutableList.builder();
+            for (Page page : pages) {
+                Block[] blocks = new Block[columnChannels.length];
+                for (int i = 0; i < columnChannels.length; i++) {
+                    blocks[i] = page.getBlock(columnChannels[i]);
+                }
+                result.add(new Page(page.getPositionCount(), blocks));
+            }
+            return result.build();
+        }
+
+        /**
+         * Returns a copy without the rows whose key was upserted or deleted, followed by the
+         * upserted rows.
+         */
+        public ReplicatedTable applyChanges(List<String> keyColumns, List<Page> upserts, List<Page> deletes, String version)
+        {
+            int[] keyChannels = new int[keyColumns.size()];
+            List<Type> keyTypes = new ArrayList<>(keyColumns.size());
+            for (int i = 0; i < keyChannels.length; i++) {
+                keyChannels[i] = getChannel(keyColumns.get(i));
+                keyTypes.add(columnTypes.get(keyChannels[i]));
+            }
+
+            Set<List<Object>> changedKeys = new HashSet<>();
+            for (Page page : upserts) {
+                for (int position = 0; position < page.getPositionCount(); position++) {
+                    changedKeys.add(readKey(page, keyChannels, keyTypes, position));
+                }
+            }
+            int[] deleteChannels = IntStream.range(0, keyChannels.length).toArray();
+            for (Page page : deletes) {
+                for (int position = 0; position < page.getPositionCount(); position++) {
+                    changedKeys.add(readKey(page, deleteChannels, keyTypes, position));
+                }
+            }
+
+            ImmutableList.Builder<Page> result = ImmutableList.builder();
+            for (Page page : pages) {
+                int[] retained = new int[page.getPositionCount()];
+                int retainedCount = 0;
+                for (int position = 0; position < page.getPositionCount(); position++) {
+                    if (!changedKeys.contains(readKey(page, keyChannels, keyTypes, position))) {
+                        retained[retainedCount++] = position;
+                    }
+                }
+                if (retainedCount == page.getPositionCount()) {
+                    result.add(page);
+                }
+                else if (retainedCount > 0) {
+                    result.add(page.copyPositions(retained, 0, retainedCount));
+                }
+            }
+            result.addAll(upserts);
+            return new ReplicatedTable(columnNames, columnTypes, result.build(), version);
+        }
+
+        private int getChannel(String columnName)
+        {
+            Integer channel = channels.get(columnName);
+            if (channel == null) {
+                throw new PrestoException(OpenAPIErrorCode.OPENAPI_INVALID_RESPONSE, "Column not found in replicated table: " + columnName);
+            }
+            return channel;
+        }
+
+        private static List<Object> readKey(Page page, int[] keyChannels, List<Type> keyTypes, int position)
+        {
+            // Not an immutable list, key values can be null
+            List<Object> key = new ArrayList<>(keyChannels.length);
+            for (int i = 0; i < keyChannels.length; i++) {
+                key.add(readNativeValue(keyTypes.get(i), page.getBlock(keyChannels[i]), position));
+            }
+            return key;
+        }
+    }
+}
@@ -15,14 +15,21 @@ package com.facebok.presto.connector.openapi;
 
 import com.facebook.presto.connector.openapi.clientv3.model.PageResult;
 import com.facebook.presto.connector.openapi.clientv3.model.SchemaTable;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableChangesPostRequest;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableIndexRowsPostRequest;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsPostRequest;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsSplitRowsPostRequest;
 import com.facebook.presto.connector.openapi.clientv3.model.Splits;
+import com.facebook.presto.connector.openapi.clientv3.model.TableChanges;
 import com.facebook.presto.connector.openapi.clientv3.model.TableMetadata;
-import com.facebook.presto.connector.openapi.clientv3.model.TupleDomain;
 
 import javax.annotation.Nullable;
 
 import java.net.URI;
 import java.util.List;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
 
 public interface OpenAPIService
         extends AutoCloseable
@@ -54,17 +61,34 @@ public interface OpenAPIService
      */
     TableMetadata getTableMetadata(SchemaTable schemaTable);
 
+    /**
+     * Returns metadata for a given table, unless it did not change since it was last fetched.
+     *
+     * @param schemaTable schema and table name
+     * @param entityTag the entity tag returned with the metadata last fetched, or {@literal null}
+     * @return metadata for a given table with its entity tag, or empty if it did not change
+     */
+    Optional<TaggedTableMetadata> getTableMetadata(SchemaTable schemaTable, @Nullable String entityTag);
+
+    /**
+     * Returns the metadata of all the tables of a schema at once.
+     *
+     * @param schemaName schema name
+     * @return metadata for all the tables of the schema
+     */
+    List<TableMetadata> listTableMetadata(String schemaName);
+
     /**
      * Returns a list of splits for a given table.
      *
      * @param schemaName schema name
      * @param tableName table name
-     * @param maxSplitCount maximum number of splits to return
+     * @param request the projected columns, constraint and limits the splits will be read with
      * @return a list of splits
      */
     Splits getSplits(String schemaName,
                      String tableName,
-                     int maxSplitCount);
+                     SchemasSchemaTablesTableSplitsPostRequest request);
 
     /**
      * Returns a page of rows for a given table.
@@ -72,14 +96,64 @@ public interface OpenAPIService
      * @param schemaName schema name
      * @param tableName table name
      * @param split split identifier
-     * @param columns columns to return
-     * @param nextToken token to fetch the next page
+     * @param request the columns to return, the filters and limits to apply and the token
+     * of the page to fetch
      * @return a page of rows
      */
     PageResult getPageRows(String schemaName,
                            String tableName,
                            String split,
-                           List<String> columns,
-                           TupleDomain outputConstraint,
-                           @Nullable String nextToken);
+                           SchemasSchemaTablesTableSplitsSplitRowsPostRequest request);
+
+    /**
+     * Returns a page of the rows matching a batch of keys.
+     *
+     * @param schemaName schema name
+     * @param tableName table name
+     * @param request the key columns, the keys, the columns to return, the filters to apply
+     * and the token of the page to fetch
+     * @return a page of rows
+     */
+    PageResult getIndexRows(String schemaName,
+                            String tableName,
+                            SchemasSchemaTablesTableIndexRowsPostRequest request);
+
+    /**
+     * Returns a page of the rows changed since a version of the table.
+     *
+     * @param schemaName schema name
+     * @param tableName table name
+     * @param request the version to start from, the key columns, the columns to return and
+     * the token of the page to fetch
+     * @return a page of changes
+     */
+    TableChanges getTableChanges(String schemaName,
+                                 String tableName,
+                                 SchemasSchemaTablesTableChangesPostRequest request);
+
+    /**
+     * Table metadata together with the entity tag the backend returned it with, if any.
+     */
+    final class TaggedTableMetadata
+    {
+        private final TableMetadata metadata;
+        private final String entityTag;
+
+        public TaggedTableMetadata(TableMetadata metadata, @Nullable String entityTag)
+        {
+            this.metadata = requireNonNull(metadata);
+            this.entityTag = entityTag;
+        }
+
+        public TableMetadata getMetadata()
+        {
+            return metadata;
+        }
+
+        @Nullable
+        public String getEntityTag()
+        {
+            return entityTag;
+        }
+    }
 }
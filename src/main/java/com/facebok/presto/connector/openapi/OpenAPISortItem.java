@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.common.block.SortOrder;
+import com.facebook.presto.connector.openapi.clientv3.model.SortItem;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sort key pushed down into a table layout, see the {@code SortItem} schema of the API.
+ */
+public class OpenAPISortItem
+{
+    private final String column;
+    private final SortOrder order;
+
+    @JsonCreator
+    public OpenAPISortItem(@JsonProperty("column") String column,
+                           @JsonProperty("order") SortOrder order)
+    {
+        this.column = requireNonNull(column, "column is null");
+        this.order = requireNonNull(order, "order is null");
+    }
+
+    @JsonProperty
+    public String getColumn()
+    {
+        return column;
+    }
+
+    @JsonProperty
+    public SortOrder getOrder()
+    {
+        return order;
+    }
+
+    public SortItem toOpenAPISortItem()
+    {
+        return new SortItem()
+                .column(column)
+                .order(SortItem.OrderEnum.valueOf(order.name()));
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        OpenAPISortItem other = (OpenAPISortItem) obj;
+        return Objects.equals(this.column, other.column) &&
+                Objects.equals(this.order, other.order);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(column, order);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("column", column)
+                .add("order", order)
+                .toString();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebok.presto.connector.openapi.util.SingleFlight;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsPostRequest;
+import com.facebook.presto.connector.openapi.clientv3.model.Splits;
+import com.facebook.presto.spi.SchemaTableName;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.inject.Inject;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Coordinator side cache of the split lists returned by the backend, keyed by the table and
+ * the whole splits request. Concurrent identical requests share a single call to the backend,
+ * even when the cache itself is disabled with a zero TTL.
+ */
+public class OpenAPISplitCache
+{
+    private final boolean enabled;
+    private final Cache<SplitsKey, Splits> cache;
+    private final SingleFlight<SplitsKey, Splits> singleFlight = new SingleFlight<>();
+
+    @Inject
+    public OpenAPISplitCache(OpenAPIConnectorConfig config)
+    {
+        this(config, Ticker.systemTicker());
+    }
+
+    public OpenAPISplitCache(OpenAPIConnectorConfig config, Ticker ticker)
+    {
+        this.enabled = config.getSplitCacheTtlMs() > 0;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(config.getSplitCacheMaxEntries())
+                .expireAfterWrite(config.getSplitCacheTtlMs(), MILLISECONDS)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached splits for the request, or loads them if missing. The request must
+     * not be modified afterwards.
+     */
+    public Splits get(SchemaTableName table, SchemasSchemaTablesTableSplitsPostRequest request, Supplier<Splits> loader)
+    {
+        SplitsKey key = new SplitsKey(table, request);
+        if (!enabled) {
+            return singleFlight.execute(key, loader);
+        }
+
+        Splits splits = cache.getIfPresent(key);
+        if (splits == null) {
+            splits = singleFlight.execute(key, loader);
+            cache.put(key, splits);
+        }
+        return splits;
+    }
+
+    @Managed
+    public long getHitCount()
+    {
+        return cache.stats().hitCount();
+    }
+
+    @Managed
+    public long getMissCount()
+    {
+        return cache.stats().missCount();
+    }
+
+    @Managed
+    public double getHitRate()
+    {
+        CacheStats stats = cache.stats();
+        return stats.requestCount() == 0 ? 0 : stats.hitRate();
+    }
+
+    @Managed
+    public long getSize()
+    {
+        return cache.size();
+    }
+
+    @Managed
+    @Nested
+    public SingleFlight<SplitsKey, Splits> getSingleFlight()
+    {
+        return singleFlight;
+    }
+
+    @Managed
+    public void invalidateAll()
+    {
+        cache.invalidateAll();
+    }
+
+    static class SplitsKey
+    {
+        private final SchemaTableName table;
+        private final SchemasSchemaTablesTableSplitsPostRequest request;
+
+        public SplitsKey(SchemaTableName table, SchemasSchemaTablesTableSplitsPostRequest request)
+        {
+            this.table = requireNonNull(table);
+            this.request = requireNonNull(request);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            SplitsKey that = (SplitsKey) o;
+            return Objects.equals(table, that.table) &&
+                    Objects.equals(request, that.request);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(table, request);
+        }
+    }
+}
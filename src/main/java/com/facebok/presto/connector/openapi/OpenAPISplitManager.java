@@ -13,12 +13,14 @@
  */
 package com.facebok.presto.connector.openapi;
 
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsPostRequest;
 import com.facebook.presto.connector.openapi.clientv3.model.Splits;
 import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.ConnectorSplit;
 import com.facebook.presto.spi.ConnectorSplitSource;
 import com.facebook.presto.spi.ConnectorTableLayoutHandle;
 import com.facebook.presto.spi.FixedSplitSource;
+import com.facebook.presto.spi.SchemaTableName;
 import com.facebook.presto.spi.connector.ConnectorSplitManager;
 import com.facebook.presto.spi.connector.ConnectorTransactionHandle;
 import com.google.common.collect.ImmutableList;
@@ -26,19 +28,28 @@ import com.google.inject.Inject;
 
 import java.util.List;
 
+import static com.facebok.presto.connector.openapi.OpenAPITupleDomainConverter.toColumnNames;
+import static com.facebok.presto.connector.openapi.OpenAPITupleDomainConverter.toOpenAPITupleDomain;
 import static java.util.Objects.requireNonNull;
 
 public class OpenAPISplitManager
         implements ConnectorSplitManager
 {
     private static final int DEFAULT_MAX_SPLIT_COUNT = 128;
+    private static final String REPLICATED_SPLIT = "replicated";
 
     private final OpenAPIService service;
+    private final OpenAPIReplicatedTables replicatedTables;
+    private final OpenAPISplitCache splitCache;
+    private final int maxInListSize;
 
     @Inject
-    public OpenAPISplitManager(OpenAPIService service)
+    public OpenAPISplitManager(OpenAPIService service, OpenAPIReplicatedTables replicatedTables, OpenAPISplitCache splitCache, OpenAPIConnectorConfig config)
     {
         this.service = requireNonNull(service);
+        this.replicatedTables = requireNonNull(replicatedTables);
+        this.splitCache = requireNonNull(splitCache);
+        this.maxInListSize = config.getMaxInListSize();
     }
 
     @Override
@@ -49,9 +60,29 @@ public class OpenAPISplitManager
             SplitSchedulingContext splitSchedulingContext)
     {
         OpenAPITableLayoutHandle tableHandle = (OpenAPITableLayoutHandle) layout;
+        SchemaTableName table = new SchemaTableName(tableHandle.getSchemaName(), tableHandle.getTableName());
 
-        Splits splits = service.getSplits(tableHandle.getSchemaName(),
-                tableHandle.getTableName(), DEFAULT_MAX_SPLIT_COUNT);
+        if (replicatedTables.isReplicated(table)) {
+            // Any worker can produce all the rows from its local copy
+            return new FixedSplitSource(ImmutableList.of(new OpenAPIConnectorSplit(tableHandle.getSchemaName(),
+                    tableHandle.getTableName(),
+                    REPLICATED_SPLIT,
+                    service.getBaseURI())));
+        }
+
+        // Let the backend skip the partitions that can't match the constraint, and
+        // return only as many splits as needed to produce the limit
+        SchemasSchemaTablesTableSplitsPostRequest request = new SchemasSchemaTablesTableSplitsPostRequest()
+                .desiredColumns(toColumnNames(tableHandle.getDesiredColumns()))
+                .outputConstraint(toOpenAPITupleDomain(tableHandle.getConstraint(), maxInListSize))
+                .maxSplitCount(DEFAULT_MAX_SPLIT_COUNT)
+                .aggregation(tableHandle.getAggregation().map(OpenAPIAggregation::toOpenAPIAggregation).orElse(null));
+        if (tableHandle.getSortOrder().isEmpty()) {
+            // The first rows in sort order can be in any split, none of them can be skipped
+            tableHandle.getLimit().ifPresent(request::limit);
+        }
+
+        Splits splits = splitCache.get(table, request, () -> service.getSplits(tableHandle.getSchemaName(), tableHandle.getTableName(), request));
 
         List<ConnectorSplit> result = splits.getSplits().stream()
                 .map(split -> new OpenAPIConnectorSplit(tableHandle.getSchemaName(),
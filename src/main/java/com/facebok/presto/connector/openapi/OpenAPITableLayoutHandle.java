@@ -18,11 +18,15 @@ import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ConnectorTableLayoutHandle;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 
+import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
 public class OpenAPITableLayoutHandle
@@ -32,17 +36,34 @@ public class OpenAPITableLayoutHandle
     private final String tableName;
     private final Optional<Set<ColumnHandle>> desiredColumns;
     private final TupleDomain<ColumnHandle> constraint;
+    private final Optional<OpenAPIAggregation> aggregation;
+    private final List<OpenAPISortItem> sortOrder;
+    private final OptionalLong limit;
+
+    public OpenAPITableLayoutHandle(String schemaName,
+                                    String tableName,
+                                    Optional<Set<ColumnHandle>> desiredColumns,
+                                    TupleDomain<ColumnHandle> constraint)
+    {
+        this(schemaName, tableName, desiredColumns, constraint, Optional.empty(), ImmutableList.of(), OptionalLong.empty());
+    }
 
     @JsonCreator
     public OpenAPITableLayoutHandle(@JsonProperty("schemaName") String schemaName,
                                     @JsonProperty("tableName") String tableName,
                                     @JsonProperty("desiredColumns") Optional<Set<ColumnHandle>> desiredColumns,
-                                    @JsonProperty("constraint") TupleDomain<ColumnHandle> constraint)
+                                    @JsonProperty("constraint") TupleDomain<ColumnHandle> constraint,
+                                    @JsonProperty("aggregation") Optional<OpenAPIAggregation> aggregation,
+                                    @JsonProperty("sortOrder") List<OpenAPISortItem> sortOrder,
+                                    @JsonProperty("limit") OptionalLong limit)
     {
         this.schemaName = requireNonNull(schemaName);
         this.tableName = requireNonNull(tableName);
         this.desiredColumns = requireNonNull(desiredColumns);
         this.constraint = requireNonNull(constraint);
+        this.aggregation = requireNonNull(aggregation);
+        this.sortOrder = ImmutableList.copyOf(requireNonNull(sortOrder));
+        this.limit = requireNonNull(limit);
     }
 
     @JsonProperty
@@ -69,6 +90,59 @@ public class OpenAPITableLayoutHandle
         return constraint;
     }
 
+    /**
+     * Aggregation applied by the backend to the rows matching the constraint. The desired
+     * columns are then the grouping keys and the aggregates.
+     */
+    @JsonProperty
+    public Optional<OpenAPIAggregation> getAggregation()
+    {
+        return aggregation;
+    }
+
+    /**
+     * Order of the rows returned by each split, only set together with a limit.
+     */
+    @JsonProperty
+    public List<OpenAPISortItem> getSortOrder()
+    {
+        return sortOrder;
+    }
+
+    /**
+     * Maximum number of rows each split needs to return. The limit is applied per split, so
+     * Presto still has to apply it on top of the rows returned by all the splits.
+     */
+    @JsonProperty
+    public OptionalLong getLimit()
+    {
+        return limit;
+    }
+
+    public OpenAPITableLayoutHandle withLimit(long limit)
+    {
+        if (this.limit.isPresent() && this.limit.getAsLong() <= limit) {
+            return this;
+        }
+        return new OpenAPITableLayoutHandle(schemaName, tableName, desiredColumns, constraint, aggregation, sortOrder, OptionalLong.of(limit));
+    }
+
+    public OpenAPITableLayoutHandle withTopN(List<OpenAPISortItem> sortOrder, long limit)
+    {
+        checkState(this.sortOrder.isEmpty() && !this.limit.isPresent(), "layout already has a limit");
+        return new OpenAPITableLayoutHandle(schemaName, tableName, desiredColumns, constraint, aggregation, sortOrder, OptionalLong.of(limit));
+    }
+
+    public OpenAPITableLayoutHandle withDesiredColumns(Set<ColumnHandle> columns)
+    {
+        return new OpenAPITableLayoutHandle(schemaName, tableName, Optional.of(columns), constraint, aggregation, sortOrder, limit);
+    }
+
+    public OpenAPITableLayoutHandle withAggregation(Set<ColumnHandle> columns, OpenAPIAggregation aggregation)
+    {
+        return new OpenAPITableLayoutHandle(schemaName, tableName, Optional.of(columns), constraint, Optional.of(aggregation), sortOrder, limit);
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -82,13 +156,16 @@ public class OpenAPITableLayoutHandle
         return Objects.equals(schemaName, that.schemaName)
                 && Objects.equals(tableName, that.tableName)
                 && Objects.equals(desiredColumns, that.desiredColumns)
-                && Objects.equals(constraint, that.constraint);
+                && Objects.equals(constraint, that.constraint)
+                && Objects.equals(aggregation, that.aggregation)
+                && Objects.equals(sortOrder, that.sortOrder)
+                && Objects.equals(limit, that.limit);
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hash(schemaName, tableName, desiredColumns, constraint);
+        return Objects.hash(schemaName, tableName, desiredColumns, constraint, aggregation, sortOrder, limit);
     }
 
     @Override
@@ -99,6 +176,9 @@ public class OpenAPITableLayoutHandle
                 ", tableName='" + tableName + '\'' +
                 ", desiredColumns=" + desiredColumns +
                 ", constraint=" + constraint +
+                ", aggregation=" + aggregation +
+                ", sortOrder=" + sortOrder +
+                ", limit=" + limit +
                 '}';
     }
 }
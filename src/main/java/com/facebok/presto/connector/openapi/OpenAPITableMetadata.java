@@ -23,12 +23,18 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static java.util.Objects.requireNonNull;
 
 public class OpenAPITableMetadata
@@ -36,23 +42,41 @@ public class OpenAPITableMetadata
     private final SchemaTableName schemaTableName;
     private final Optional<String> comment;
     private final List<ColumnMetadata> columns;
+    private final Set<OpenAPIPushdown> supportedPushdowns;
+    private final Map<String, Set<OpenAPIPredicate>> enforcedPredicates;
+    private final List<Set<String>> indexableKeys;
+    private final List<String> primaryKey;
 
     public OpenAPITableMetadata(TableMetadata metadata, TypeManager typeManager)
     {
         this(new SchemaTableName(requireNonNull(metadata.getSchemaTableName().getSchema()),
                         requireNonNull(metadata.getSchemaTableName().getTable())),
                 extractColumnMetadata(metadata, typeManager),
-                Optional.ofNullable(metadata.getComment()));
+                Optional.ofNullable(metadata.getComment()),
+                extractSupportedPushdowns(metadata),
+                extractEnforcedPredicates(metadata),
+                extractIndexableKeys(metadata),
+                Optional.ofNullable(metadata.getPrimaryKey()).orElse(ImmutableList.of()));
     }
 
     @JsonCreator
     public OpenAPITableMetadata(@JsonProperty("schemaTableName") SchemaTableName schemaTableName,
                                 @JsonProperty("columns") List<ColumnMetadata> columns,
-                                @JsonProperty("comment") Optional<String> comment)
+                                @JsonProperty("comment") Optional<String> comment,
+                                @JsonProperty("supportedPushdowns") Set<OpenAPIPushdown> supportedPushdowns,
+                                @JsonProperty("enforcedPredicates") Map<String, Set<OpenAPIPredicate>> enforcedPredicates,
+                                @JsonProperty("indexableKeys") List<Set<String>> indexableKeys,
+                                @JsonProperty("primaryKey") List<String> primaryKey)
     {
         this.schemaTableName = requireNonNull(schemaTableName, "schemaTableName is null");
         this.columns = ImmutableList.copyOf(requireNonNull(columns, "columns is null"));
         this.comment = requireNonNull(comment, "comment is null");
+        this.supportedPushdowns = Sets.immutableEnumSet(requireNonNull(supportedPushdowns, "supportedPushdowns is null"));
+        this.enforcedPredicates = ImmutableMap.copyOf(requireNonNull(enforcedPredicates, "enforcedPredicates is null"));
+        this.indexableKeys = requireNonNull(indexableKeys, "indexableKeys is null").stream()
+                .map(ImmutableSet::copyOf)
+                .collect(toImmutableList());
+        this.primaryKey = ImmutableList.copyOf(requireNonNull(primaryKey, "primaryKey is null"));
     }
 
     @JsonProperty
@@ -73,6 +97,50 @@ public class OpenAPITableMetadata
         return comment;
     }
 
+    @JsonProperty
+    public Set<OpenAPIPushdown> getSupportedPushdowns()
+    {
+        return supportedPushdowns;
+    }
+
+    public boolean supportsPushdown(OpenAPIPushdown pushdown)
+    {
+        return supportedPushdowns.contains(pushdown);
+    }
+
+    /**
+     * Kinds of predicates the backend applies exactly, by column name. Columns without
+     * enforced predicates are missing.
+     */
+    @JsonProperty
+    public Map<String, Set<OpenAPIPredicate>> getEnforcedPredicates()
+    {
+        return enforcedPredicates;
+    }
+
+    public boolean isEnforced(String columnName, OpenAPIPredicate predicate)
+    {
+        return enforcedPredicates.getOrDefault(columnName, ImmutableSet.of()).contains(predicate);
+    }
+
+    /**
+     * Sets of columns the rows can be looked up by, with the index rows endpoint.
+     */
+    @JsonProperty
+    public List<Set<String>> getIndexableKeys()
+    {
+        return indexableKeys;
+    }
+
+    /**
+     * Columns whose values are unique across the rows, empty if the table has no primary key.
+     */
+    @JsonProperty
+    public List<String> getPrimaryKey()
+    {
+        return primaryKey;
+    }
+
     private static List<ColumnMetadata> extractColumnMetadata(TableMetadata metadata, TypeManager typeManager)
     {
         ImmutableList.Builder<ColumnMetadata> result = ImmutableList.builder();
@@ -85,6 +153,39 @@ public class OpenAPITableMetadata
         return result.build();
     }
 
+    private static Set<OpenAPIPushdown> extractSupportedPushdowns(TableMetadata metadata)
+    {
+        if (metadata.getSupportedPushdowns() == null) {
+            return ImmutableSet.of();
+        }
+        return metadata.getSupportedPushdowns().stream()
+                .map(pushdown -> OpenAPIPushdown.valueOf(pushdown.name()))
+                .collect(toImmutableSet());
+    }
+
+    private static Map<String, Set<OpenAPIPredicate>> extractEnforcedPredicates(TableMetadata metadata)
+    {
+        ImmutableMap.Builder<String, Set<OpenAPIPredicate>> result = ImmutableMap.builder();
+        for (com.facebook.presto.connector.openapi.clientv3.model.ColumnMetadata column : metadata.getColumns()) {
+            if (column.getEnforcedPredicates() != null && !column.getEnforcedPredicates().isEmpty()) {
+                result.put(column.getName(), column.getEnforcedPredicates().stream()
+                        .map(predicate -> OpenAPIPredicate.valueOf(predicate.name()))
+                        .collect(Sets.toImmutableEnumSet()));
+            }
+        }
+        return result.build();
+    }
+
+    private static List<Set<String>> extractIndexableKeys(TableMetadata metadata)
+    {
+        if (metadata.getIndexableKeys() == null) {
+            return ImmutableList.of();
+        }
+        return metadata.getIndexableKeys().stream()
+                .map(ImmutableSet::copyOf)
+                .collect(toImmutableList());
+    }
+
     public ConnectorTableMetadata toConnectorTableMetadata()
     {
         return new ConnectorTableMetadata(
@@ -106,13 +207,17 @@ public class OpenAPITableMetadata
         OpenAPITableMetadata other = (OpenAPITableMetadata) obj;
         return Objects.equals(this.schemaTableName, other.schemaTableName) &&
                 Objects.equals(this.columns, other.columns) &&
-                Objects.equals(this.comment, other.comment);
+                Objects.equals(this.comment, other.comment) &&
+                Objects.equals(this.supportedPushdowns, other.supportedPushdowns) &&
+                Objects.equals(this.enforcedPredicates, other.enforcedPredicates) &&
+                Objects.equals(this.indexableKeys, other.indexableKeys) &&
+                Objects.equals(this.primaryKey, other.primaryKey);
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hash(schemaTableName, columns, comment);
+        return Objects.hash(schemaTableName, columns, comment, supportedPushdowns, enforcedPredicates, indexableKeys, primaryKey);
     }
 
     @Override
@@ -122,6 +227,10 @@ public class OpenAPITableMetadata
                 .add("schemaTableName", schemaTableName)
                 .add("columns", columns)
                 .add("comment", comment)
+                .add("supportedPushdowns", supportedPushdowns)
+                .add("enforcedPredicates", enforcedPredicates)
+                .add("indexableKeys", indexableKeys)
+                .add("primaryKey", primaryKey)
                 .toString();
     }
 }
@@ -0,0 +1,304 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Marker;
+import com.facebook.presto.common.predicate.Range;
+import com.facebook.presto.common.predicate.SortedRangeSet;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.type.DecimalType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.common.type.TypeSignature;
+import com.facebook.presto.connector.openapi.clientv3.model.AllOrNoneValueSet;
+import com.facebook.presto.connector.openapi.clientv3.model.BigintData;
+import com.facebook.presto.connector.openapi.clientv3.model.BloomFilter;
+import com.facebook.presto.connector.openapi.clientv3.model.EquatableValueSet;
+import com.facebook.presto.connector.openapi.clientv3.model.RangeValueSet;
+import com.facebook.presto.connector.openapi.clientv3.model.ValueSet;
+import com.facebook.presto.connector.openapi.clientv3.model.VarcharData;
+import com.facebook.presto.spi.ColumnHandle;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+
+import javax.annotation.Nullable;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+/**
+ * Converts the Presto representation of columns and constraints to the one used by the API.
+ */
+public final class OpenAPITupleDomainConverter
+{
+    private static final TypeSignature VARCHAR_TYPE_SIGNATURE = TypeSignature.parseTypeSignature("varchar");
+
+    private OpenAPITupleDomainConverter() {}
+
+    /**
+     * Returns the sorted names of the desired columns, or {@literal null} if all columns are desired.
+     */
+    @Nullable
+    public static List<String> toColumnNames(Optional<Set<ColumnHandle>> desiredColumns)
+    {
+        return desiredColumns
+                .map(columns -> columns.stream()
+                        .map(column -> ((OpenAPIColumnHandle) column).getPath())
+                        .sorted()
+                        .collect(toImmutableList()))
+                .orElse(null);
+    }
+
+    /**
+     * Converts the constraints to the API representation. Discrete sets of up to maxInListSize
+     * values are sent as a list of values, larger ones are replaced by the range spanning them.
+     */
+    public static com.facebook.presto.connector.openapi.clientv3.model.TupleDomain toOpenAPITupleDomain(
+            TupleDomain<ColumnHandle> constraints,
+            int maxInListSize)
+    {
+        if (constraints == null) {
+            return null;
+        }
+
+        Map<String, com.facebook.presto.connector.openapi.clientv3.model.Domain> openAPIDomains = new HashMap<>();
+        constraints.getDomains().ifPresent(domains -> {
+            for (Map.Entry<ColumnHandle, Domain> entry : domains.entrySet()) {
+                OpenAPIColumnHandle columnHandle = (OpenAPIColumnHandle) entry.getKey();
+                if (!columnHandle.getSubfields().isEmpty()) {
+                    // Domains are keyed by column, there is no way to express one on a nested field
+                    continue;
+                }
+                toOpenAPIDomain(entry.getValue(), columnHandle.getType(), maxInListSize)
+                        .ifPresent(domain -> openAPIDomains.put(columnHandle.getName(), domain));
+                // Not being able to handle a domain is not an error. It's up to the backend to
+                // decide how to handle the missing domain if it's important for the query.
+            }
+        });
+
+        return new com.facebook.presto.connector.openapi.clientv3.model.TupleDomain()
+                .domains(openAPIDomains);
+    }
+
+    private static Optional<com.facebook.presto.connector.openapi.clientv3.model.Domain> toOpenAPIDomain(
+            Domain domain,
+            Type columnType,
+            int maxInListSize)
+    {
+        if (!isSupportedType(columnType) || !isSupportedType(domain.getType())) {
+            return Optional.empty();
+        }
+
+        ValueSet valueSet;
+        if (domain.getValues().isNone()) {
+            // Only nulls, if allowed
+            valueSet = new ValueSet().allOrNone(new AllOrNoneValueSet().all(false));
+        }
+        else if (domain.getValues().isAll()) {
+            // Any non-null value
+            valueSet = new ValueSet().allOrNone(new AllOrNoneValueSet().all(true));
+        }
+        else if (domain.getValues().isSingleValue()) {
+            valueSet = new ValueSet().equatable(new EquatableValueSet()
+                    .whiteList(true)
+                    .values(ImmutableList.of(toBlock(columnType, ImmutableList.of(domain.getValues().getSingleValue())))));
+        }
+        else if (domain.getValues() instanceof SortedRangeSet) {
+            List<Range> ranges = domain.getValues().getRanges().getOrderedRanges();
+            if (ranges.size() > maxInListSize) {
+                // Too many values or ranges to send, fall back to the range spanning all of them
+                ranges = ImmutableList.of(domain.getValues().getRanges().getSpan());
+            }
+
+            if (isDiscreteSet(domain) && ranges.size() > 1) {
+                // IN list, all the values are sent in a single block
+                ImmutableList.Builder<Object> values = ImmutableList.builder();
+                for (Range range : ranges) {
+                    values.add(range.getSingleValue());
+                }
+                valueSet = new ValueSet().equatable(new EquatableValueSet()
+                        .whiteList(true)
+                        .values(ImmutableList.of(toBlock(columnType, values.build()))));
+            }
+            else {
+                ImmutableList.Builder<com.facebook.presto.connector.openapi.clientv3.model.Range> openAPIRanges = ImmutableList.builder();
+                for (Range range : ranges) {
+                    openAPIRanges.add(new com.facebook.presto.connector.openapi.clientv3.model.Range()
+                            .low(toOpenAPIMarker(range.getLow(), columnType))
+                            .high(toOpenAPIMarker(range.getHigh(), columnType)));
+                }
+                valueSet = new ValueSet().range(new RangeValueSet().ranges(openAPIRanges.build()));
+            }
+        }
+        else {
+            return Optional.empty();
+        }
+
+        return Optional.of(new com.facebook.presto.connector.openapi.clientv3.model.Domain()
+                .nullAllowed(domain.isNullAllowed())
+                .valueSet(valueSet));
+    }
+
+    /**
+     * Returns the kind of predicate the domain is sent as by {@link #toOpenAPITupleDomain}, or
+     * empty if the domain is not sent or is replaced by a wider one.
+     */
+    public static Optional<OpenAPIPredicate> getPredicateKind(Domain domain, Type columnType, int maxInListSize)
+    {
+        if (!isSupportedType(columnType) || !isSupportedType(domain.getType())) {
+            return Optional.empty();
+        }
+        if (domain.getValues().isNone() || domain.getValues().isAll()) {
+            return Optional.of(OpenAPIPredicate.NULL_CHECK);
+        }
+        if (domain.getValues().isSingleValue()) {
+            return Optional.of(OpenAPIPredicate.EQUALITY);
+        }
+        if (domain.getValues() instanceof SortedRangeSet && domain.getValues().getRanges().getRangeCount() <= maxInListSize) {
+            return Optional.of(isDiscreteSet(domain) ? OpenAPIPredicate.IN_LIST : OpenAPIPredicate.RANGE);
+        }
+        return Optional.empty();
+    }
+
+    private static com.facebook.presto.connector.openapi.clientv3.model.Marker toOpenAPIMarker(Marker marker, Type type)
+    {
+        // Unbounded markers have no value
+        com.facebook.presto.connector.openapi.clientv3.model.Marker openAPIMarker = new com.facebook.presto.connector.openapi.clientv3.model.Marker()
+                .bound(com.facebook.presto.connector.openapi.clientv3.model.Marker.BoundEnum.valueOf(marker.getBound().name()));
+        if (marker.getValueBlock().isPresent()) {
+            openAPIMarker.value(toBlock(type, ImmutableList.of(marker.getValue())));
+        }
+        return openAPIMarker;
+    }
+
+    /**
+     * Encodes the values of a column into a single block.
+     */
+    public static com.facebook.presto.connector.openapi.clientv3.model.Block toBlock(Type type, List<?> values)
+    {
+        if (isVarchar(type) || type.equals(VARBINARY)) {
+            ImmutableList.Builder<Boolean> nulls = ImmutableList.builder();
+            ImmutableList.Builder<Integer> sizes = ImmutableList.builder();
+            DynamicSliceOutput bytes = new DynamicSliceOutput(64);
+            for (Object value : values) {
+                Slice slice = (Slice) value;
+                nulls.add(false);
+                sizes.add(slice.length());
+                bytes.writeBytes(slice);
+            }
+            return new com.facebook.presto.connector.openapi.clientv3.model.Block().varcharData(new VarcharData()
+                    .nulls(nulls.build())
+                    .sizes(sizes.build())
+                    .bytes(Base64.getEncoder().encodeToString(bytes.slice().getBytes())));
+        }
+        if (type.equals(BIGINT) || isShortDecimal(type)) {
+            ImmutableList.Builder<Boolean> nulls = ImmutableList.builder();
+            ImmutableList.Builder<Long> longs = ImmutableList.builder();
+            for (Object value : values) {
+                nulls.add(false);
+                longs.add((Long) value);
+            }
+            return new com.facebook.presto.connector.openapi.clientv3.model.Block().bigintData(new BigintData()
+                    .nulls(nulls.build())
+                    .longs(longs.build()));
+        }
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+
+    /**
+     * Returns whether values of the type can be encoded with {@link #toBlock}.
+     */
+    public static boolean isEncodable(Type type)
+    {
+        return isVarchar(type) || type.equals(VARBINARY) || type.equals(BIGINT) || isShortDecimal(type);
+    }
+
+    /**
+     * Short decimals are sent as their unscaled values in the bigint layout.
+     */
+    public static boolean isShortDecimal(Type type)
+    {
+        return type instanceof DecimalType && ((DecimalType) type).isShort();
+    }
+
+    private static boolean isSupportedType(Type type)
+    {
+        return isVarchar(type);
+    }
+
+    private static boolean isVarchar(Type type)
+    {
+        return type.getTypeSignature().equals(VARCHAR_TYPE_SIGNATURE);
+    }
+
+    /**
+     * Returns bloom filters for the columns constrained to a discrete set of values that is too
+     * large to be sent as an IN list, typically the join keys collected by a dynamic filter.
+     * Dynamic filters the engine collapsed to a range or dropped for their size yield none.
+     */
+    public static Map<String, BloomFilter> toOpenAPIBloomFilters(
+            TupleDomain<ColumnHandle> constraints,
+            int maxInListSize,
+            double falsePositiveProbability,
+            int maxSizeInBytes)
+    {
+        if (constraints == null || !constraints.getDomains().isPresent()) {
+            return ImmutableMap.of();
+        }
+
+        ImmutableMap.Builder<String, BloomFilter> bloomFilters = ImmutableMap.builder();
+        for (Map.Entry<ColumnHandle, Domain> entry : constraints.getDomains().get().entrySet()) {
+            OpenAPIColumnHandle columnHandle = (OpenAPIColumnHandle) entry.getKey();
+            Domain domain = entry.getValue();
+            if (!columnHandle.getSubfields().isEmpty() ||
+                    !isVarchar(columnHandle.getType()) ||
+                    domain.isNullAllowed() ||
+                    !isDiscreteSet(domain) ||
+                    domain.getValues().getRanges().getRangeCount() <= maxInListSize) {
+                continue;
+            }
+
+            List<Range> ranges = domain.getValues().getRanges().getOrderedRanges();
+            OpenAPIBloomFilter bloomFilter = OpenAPIBloomFilter.create(ranges.size(), falsePositiveProbability, maxSizeInBytes);
+            for (Range range : ranges) {
+                bloomFilter.put((Slice) range.getSingleValue());
+            }
+            bloomFilters.put(columnHandle.getName(), bloomFilter.toOpenAPIBloomFilter());
+        }
+        return bloomFilters.build();
+    }
+
+    private static boolean isDiscreteSet(Domain domain)
+    {
+        if (!(domain.getValues() instanceof SortedRangeSet) || domain.getValues().isNone()) {
+            return false;
+        }
+        for (Range range : domain.getValues().getRanges().getOrderedRanges()) {
+            if (!range.isSingleValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
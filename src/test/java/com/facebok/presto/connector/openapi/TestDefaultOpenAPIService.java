@@ -14,17 +14,26 @@
 package com.facebok.presto.connector.openapi;
 
 import com.facebook.presto.connector.openapi.clientv3.JSON;
+import com.facebook.presto.connector.openapi.clientv3.model.AllOrNoneValueSet;
 import com.facebook.presto.connector.openapi.clientv3.model.Block;
 import com.facebook.presto.connector.openapi.clientv3.model.ColumnMetadata;
+import com.facebook.presto.connector.openapi.clientv3.model.Domain;
 import com.facebook.presto.connector.openapi.clientv3.model.Error;
 import com.facebook.presto.connector.openapi.clientv3.model.PageResult;
 import com.facebook.presto.connector.openapi.clientv3.model.SchemaTable;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsPostRequest;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsSplitRowsPostRequest;
 import com.facebook.presto.connector.openapi.clientv3.model.Splits;
 import com.facebook.presto.connector.openapi.clientv3.model.TableMetadata;
+import com.facebook.presto.connector.openapi.clientv3.model.TupleDomain;
+import com.facebook.presto.connector.openapi.clientv3.model.ValueSet;
 import com.facebook.presto.connector.openapi.clientv3.model.VarcharData;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.assertj.core.api.Assertions;
 import org.testng.annotations.Test;
 
@@ -32,9 +41,15 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class TestDefaultOpenAPIService
@@ -93,6 +108,42 @@ public class TestDefaultOpenAPIService
         }
     }
 
+    @Test
+    public void testListTables_AllSchemasPaginated() throws Exception
+    {
+        try (MockWebServer httpServer = new MockWebServer()) {
+            httpServer.setDispatcher(new Dispatcher()
+            {
+                @Override
+                public MockResponse dispatch(RecordedRequest request)
+                {
+                    switch (request.getPath()) {
+                        case "/schemas":
+                            return new MockResponse().setBody(JSON.serialize(ImmutableList.of("schema1", "schema2")));
+                        case "/schemas/schema1/tables":
+                            return new MockResponse()
+                                    .setHeader("X-Next-Token", "page2")
+                                    .setBody(JSON.serialize(ImmutableList.of(new SchemaTable().schema("schema1").table("table1"))));
+                        case "/schemas/schema1/tables?nextToken=page2":
+                            return new MockResponse().setBody(JSON.serialize(ImmutableList.of(new SchemaTable().schema("schema1").table("table2"))));
+                        case "/schemas/schema2/tables":
+                            return new MockResponse().setBody(JSON.serialize(ImmutableList.of(new SchemaTable().schema("schema2").table("table3"))));
+                        default:
+                            return new MockResponse().setResponseCode(404);
+                    }
+                }
+            });
+            httpServer.start();
+
+            try (OpenAPIService service = newService(httpServer)) {
+                assertThat(service.listTables(null))
+                        .extracting(table -> table.getSchema() + "." + table.getTable())
+                        .containsExactly("schema1.table1", "schema1.table2", "schema2.table3");
+            }
+            assertThat(httpServer.getRequestCount()).isEqualTo(4);
+        }
+    }
+
     @Test
     public void testListTables_SchemaNotFound() throws Exception
     {
@@ -128,6 +179,48 @@ public class TestDefaultOpenAPIService
         }
     }
 
+    @Test
+    public void testListTableMetadata() throws Exception
+    {
+        List<TableMetadata> expectedMetadata = ImmutableList.of(
+                new TableMetadata()
+                        .schemaTableName(new SchemaTable().schema("virtual").table("table1"))
+                        .columns(ImmutableList.of(new ColumnMetadata().name("column1").type("integer"))),
+                new TableMetadata()
+                        .schemaTableName(new SchemaTable().schema("virtual").table("table2"))
+                        .columns(ImmutableList.of(new ColumnMetadata().name("column1").type("varchar"))));
+        MockResponse response = new MockResponse().setBody(JSON.serialize(expectedMetadata));
+
+        try (MockWebServer httpServer = withMockResponse(response);
+                OpenAPIService service = newService(httpServer)) {
+            assertThat(service.listTableMetadata("virtual")).isEqualTo(expectedMetadata);
+            assertThat(httpServer.takeRequest().getPath()).isEqualTo("/schemas/virtual/metadata");
+        }
+    }
+
+    @Test
+    public void testGetTableMetadata_NotModified() throws Exception
+    {
+        SchemaTable schemaTable = new SchemaTable().schema("virtual").table("table1");
+        TableMetadata expectedMetadata = new TableMetadata()
+                .schemaTableName(schemaTable)
+                .columns(ImmutableList.of(new ColumnMetadata().name("column1").type("integer")));
+
+        try (MockWebServer httpServer = withMockResponse(
+                new MockResponse().setHeader("ETag", "\"v1\"").setBody(JSON.serialize(expectedMetadata)),
+                new MockResponse().setResponseCode(304));
+                OpenAPIService service = newService(httpServer)) {
+            Optional<OpenAPIService.TaggedTableMetadata> actualMetadata = service.getTableMetadata(schemaTable, null);
+            assertThat(actualMetadata).isPresent();
+            assertThat(actualMetadata.get().getMetadata()).isEqualTo(expectedMetadata);
+            assertThat(actualMetadata.get().getEntityTag()).isEqualTo("\"v1\"");
+            assertThat(httpServer.takeRequest().getHeader("If-None-Match")).isNull();
+
+            assertThat(service.getTableMetadata(schemaTable, "\"v1\"")).isEmpty();
+            assertThat(httpServer.takeRequest().getHeader("If-None-Match")).isEqualTo("\"v1\"");
+        }
+    }
+
     @Test
     public void testGetTableMetadata_NotFound() throws Exception
     {
@@ -153,11 +246,38 @@ public class TestDefaultOpenAPIService
 
         try (MockWebServer httpServer = withMockResponse(response);
                 OpenAPIService service = newService(httpServer)) {
-            Splits actualSplits = service.getSplits("schema", "table", 10);
+            Splits actualSplits = service.getSplits("schema", "table", new SchemasSchemaTablesTableSplitsPostRequest().maxSplitCount(10));
             assertThat(actualSplits).isEqualTo(expectedSplits);
         }
     }
 
+    @Test
+    public void testGetSplits_WithColumnsAndConstraint() throws Exception
+    {
+        Splits expectedSplits = new Splits().splits(ImmutableList.of("split1"));
+        MockResponse response = new MockResponse().setBody(JSON.serialize(expectedSplits));
+
+        TupleDomain outputConstraint = new TupleDomain().domains(ImmutableMap.of("column1",
+                new Domain().nullAllowed(false).valueSet(new ValueSet().allOrNone(new AllOrNoneValueSet().all(false)))));
+
+        try (MockWebServer httpServer = withMockResponse(response);
+                OpenAPIService service = newService(httpServer)) {
+            service.getSplits("schema", "table", new SchemasSchemaTablesTableSplitsPostRequest()
+                    .desiredColumns(ImmutableList.of("column1"))
+                    .outputConstraint(outputConstraint)
+                    .maxSplitCount(10)
+                    .limit(100L));
+
+            SchemasSchemaTablesTableSplitsPostRequest actualRequest = JSON.deserialize(
+                    httpServer.takeRequest().getBody().readUtf8(),
+                    SchemasSchemaTablesTableSplitsPostRequest.class);
+            assertThat(actualRequest.getDesiredColumns()).containsExactly("column1");
+            assertThat(actualRequest.getOutputConstraint()).isEqualTo(outputConstraint);
+            assertThat(actualRequest.getMaxSplitCount()).isEqualTo(10);
+            assertThat(actualRequest.getLimit()).isEqualTo(100L);
+        }
+    }
+
     @Test
     public void testGetSplits_NotFound() throws Exception
     {
@@ -166,7 +286,7 @@ public class TestDefaultOpenAPIService
 
         try (MockWebServer httpServer = withMockResponse(response);
                 OpenAPIService service = newService(httpServer)) {
-            service.getSplits("schema", "table", 10);
+            service.getSplits("schema", "table", new SchemasSchemaTablesTableSplitsPostRequest().maxSplitCount(10));
             Assertions.fail("Expected OpenAPIServiceException to be thrown from getSplits");
         }
         catch (OpenAPIServiceException e) {
@@ -197,9 +317,8 @@ public class TestDefaultOpenAPIService
             PageResult actualPageResult = service.getPageRows("schema",
                     "table",
                     "split",
-                    ImmutableList.of("column1"),
-                    null,
-                    null);
+                    new SchemasSchemaTablesTableSplitsSplitRowsPostRequest()
+                            .desiredColumns(ImmutableList.of("column1")));
 
             assertThat(actualPageResult).isEqualTo(expectPageResult);
         }
@@ -214,7 +333,7 @@ public class TestDefaultOpenAPIService
         try (MockWebServer httpServer = withMockResponse(response);
                 OpenAPIService service = newService(httpServer)) {
             service.getPageRows("schema", "table", "split",
-                    ImmutableList.of("column1"), null, null);
+                    new SchemasSchemaTablesTableSplitsSplitRowsPostRequest().desiredColumns(ImmutableList.of("column1")));
             Assertions.fail("Expected OpenAPIServiceException to be thrown from getPageRows");
         }
         catch (OpenAPIServiceException e) {
@@ -223,6 +342,51 @@ public class TestDefaultOpenAPIService
         }
     }
 
+    @Test
+    public void testPageRows_CoalescesIdenticalRequests() throws Exception
+    {
+        PageResult expectPageResult = new PageResult().rowCount(0);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (MockWebServer httpServer = new MockWebServer()) {
+            httpServer.setDispatcher(new Dispatcher()
+            {
+                @Override
+                public MockResponse dispatch(RecordedRequest request)
+                        throws InterruptedException
+                {
+                    release.await();
+                    return new MockResponse().setBody(JSON.serialize(expectPageResult));
+                }
+            });
+            httpServer.start();
+
+            DefaultOpenAPIService service = (DefaultOpenAPIService) newService(httpServer);
+            SchemasSchemaTablesTableSplitsSplitRowsPostRequest request = new SchemasSchemaTablesTableSplitsSplitRowsPostRequest()
+                    .desiredColumns(ImmutableList.of("column1"));
+
+            Future<PageResult> first = executor.submit(() -> service.getPageRows("schema", "table", "split", request));
+            while (httpServer.getRequestCount() == 0) {
+                Thread.sleep(10);
+            }
+            Future<PageResult> second = executor.submit(() -> service.getPageRows("schema", "table", "split",
+                    new SchemasSchemaTablesTableSplitsSplitRowsPostRequest().desiredColumns(ImmutableList.of("column1"))));
+            while (service.getPageRowsSingleFlight().getCoalescedCalls() == 0) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            assertThat(first.get(10, SECONDS)).isEqualTo(expectPageResult);
+            assertThat(second.get(10, SECONDS)).isEqualTo(expectPageResult);
+            assertThat(httpServer.getRequestCount()).isEqualTo(1);
+        }
+        finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
     private MockWebServer withMockResponse(MockResponse... responses)
     {
         MockWebServer httpServer = new MockWebServer();
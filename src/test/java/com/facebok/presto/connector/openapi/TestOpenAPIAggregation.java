@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebok.presto.connector.openapi.OpenAPIAggregation.OpenAPIAggregate;
+import com.facebook.presto.connector.openapi.clientv3.model.Aggregate;
+import com.facebook.presto.connector.openapi.clientv3.model.Aggregation;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPIAggregation
+{
+    @Test
+    public void testToOpenAPIAggregation()
+    {
+        OpenAPIAggregation aggregation = new OpenAPIAggregation(
+                ImmutableList.of("region"),
+                ImmutableList.of(
+                        new OpenAPIAggregate("$agg0", Aggregate.FunctionEnum.COUNT, Optional.empty()),
+                        new OpenAPIAggregate("$agg1", Aggregate.FunctionEnum.MAX, Optional.of("amount"))));
+
+        Aggregation openAPIAggregation = aggregation.toOpenAPIAggregation();
+        assertThat(openAPIAggregation.getGroupingKeys()).containsExactly("region");
+        assertThat(openAPIAggregation.getAggregates()).containsExactly(
+                new Aggregate().name("$agg0").function(Aggregate.FunctionEnum.COUNT),
+                new Aggregate().name("$agg1").function(Aggregate.FunctionEnum.MAX).column("amount"));
+    }
+}
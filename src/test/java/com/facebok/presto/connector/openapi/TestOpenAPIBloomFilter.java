@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.connector.openapi.clientv3.model.BloomFilter;
+import org.testng.annotations.Test;
+
+import java.util.Base64;
+
+import static io.airlift.slice.Slices.utf8Slice;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPIBloomFilter
+{
+    @Test
+    public void testNoFalseNegatives()
+    {
+        OpenAPIBloomFilter bloomFilter = OpenAPIBloomFilter.create(10_000, 0.01, 1024 * 1024);
+        for (int i = 0; i < 10_000; i++) {
+            bloomFilter.put(utf8Slice("key" + i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(bloomFilter.mightContain(utf8Slice("key" + i))).isTrue();
+        }
+    }
+
+    @Test
+    public void testFalsePositiveProbability()
+    {
+        OpenAPIBloomFilter bloomFilter = OpenAPIBloomFilter.create(10_000, 0.01, 1024 * 1024);
+        for (int i = 0; i < 10_000; i++) {
+            bloomFilter.put(utf8Slice("key" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (bloomFilter.mightContain(utf8Slice("other" + i))) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+
+    @Test
+    public void testMaxSize()
+    {
+        OpenAPIBloomFilter bloomFilter = OpenAPIBloomFilter.create(1_000_000, 0.01, 1024);
+        assertThat(bloomFilter.getNumBits()).isEqualTo(1024 * 8);
+        assertThat(bloomFilter.getNumHashFunctions()).isEqualTo(1);
+    }
+
+    @Test
+    public void testToOpenAPIBloomFilter()
+    {
+        OpenAPIBloomFilter bloomFilter = OpenAPIBloomFilter.create(100, 0.01, 1024);
+        bloomFilter.put(utf8Slice("value"));
+
+        BloomFilter openAPIBloomFilter = bloomFilter.toOpenAPIBloomFilter();
+        assertThat(openAPIBloomFilter.getHashFunction()).isEqualTo(BloomFilter.HashFunctionEnum.MURMUR3_X64_128);
+        assertThat(openAPIBloomFilter.getNumBits()).isEqualTo(bloomFilter.getNumBits());
+        assertThat(openAPIBloomFilter.getNumHashFunctions()).isEqualTo(bloomFilter.getNumHashFunctions());
+        assertThat(Base64.getDecoder().decode(openAPIBloomFilter.getBits()))
+                .hasSize((bloomFilter.getNumBits() + 7) / 8);
+    }
+}
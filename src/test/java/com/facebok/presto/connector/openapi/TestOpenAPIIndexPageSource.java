@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.connector.openapi.clientv3.JSON;
+import com.facebook.presto.connector.openapi.clientv3.model.BigintData;
+import com.facebook.presto.connector.openapi.clientv3.model.Block;
+import com.facebook.presto.connector.openapi.clientv3.model.PageResult;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableIndexRowsPostRequest;
+import com.facebook.presto.connector.openapi.clientv3.model.TupleDomain;
+import com.facebook.presto.spi.InMemoryRecordSet;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static java.util.Collections.nCopies;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPIIndexPageSource
+{
+    private static final OpenAPIColumnHandle ID = new OpenAPIColumnHandle("id", BIGINT);
+
+    @Test
+    public void testLookupInBatches() throws Exception
+    {
+        InMemoryRecordSet keys = InMemoryRecordSet.builder(ImmutableList.of(BIGINT))
+                .addRow(1L)
+                .addRow((Object) null)
+                .addRow(2L)
+                .addRow(3L)
+                .build();
+
+        try (MockWebServer httpServer = new MockWebServer()) {
+            httpServer.enqueue(rows(1L, 2L));
+            httpServer.enqueue(rows(3L));
+            httpServer.start();
+
+            OpenAPIConnectorConfig config = new OpenAPIConnectorConfig()
+                    .setBaseUrl(httpServer.url("/").toString());
+            try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                OpenAPIIndexPageSource pageSource = new OpenAPIIndexPageSource(service,
+                        "schema",
+                        "table",
+                        ImmutableList.of(ID),
+                        ImmutableList.of(ID),
+                        new TupleDomain().domains(ImmutableMap.of()),
+                        keys.cursor(),
+                        2);
+
+                long rowCount = 0;
+                while (!pageSource.isFinished()) {
+                    Page page = pageSource.getNextPage();
+                    if (page != null) {
+                        rowCount += page.getPositionCount();
+                    }
+                }
+                assertThat(rowCount).isEqualTo(3);
+            }
+
+            // The null key is skipped
+            assertThat(takeRequest(httpServer).getKeys().get(0).getBigintData().getLongs()).containsExactly(1L, 2L);
+            SchemasSchemaTablesTableIndexRowsPostRequest secondRequest = takeRequest(httpServer);
+            assertThat(secondRequest.getKeyColumns()).containsExactly(ID.getName());
+            assertThat(secondRequest.getKeys().get(0).getBigintData().getLongs()).containsExactly(3L);
+            assertThat(httpServer.getRequestCount()).isEqualTo(2);
+        }
+    }
+
+    private static MockResponse rows(Long... ids)
+    {
+        PageResult pageResult = new PageResult()
+                .rowCount(ids.length)
+                .addColumnBlocksItem(new Block().bigintData(new BigintData()
+                        .nulls(nCopies(ids.length, false))
+                        .longs(ImmutableList.copyOf(ids))));
+        return new MockResponse().setBody(JSON.serialize(pageResult));
+    }
+
+    private static SchemasSchemaTablesTableIndexRowsPostRequest takeRequest(MockWebServer httpServer)
+            throws InterruptedException
+    {
+        return JSON.deserialize(httpServer.takeRequest().getBody().readUtf8(), SchemasSchemaTablesTableIndexRowsPostRequest.class);
+    }
+}
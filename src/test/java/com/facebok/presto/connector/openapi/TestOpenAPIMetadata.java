@@ -0,0 +1,187 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.common.type.TypeManager;
+import com.facebook.presto.connector.openapi.clientv3.JSON;
+import com.facebook.presto.connector.openapi.clientv3.model.ColumnMetadata;
+import com.facebook.presto.connector.openapi.clientv3.model.Error;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemaTable;
+import com.facebook.presto.connector.openapi.clientv3.model.TableMetadata;
+import com.facebook.presto.spi.SchemaTableName;
+import com.facebook.presto.spi.SchemaTablePrefix;
+import com.google.common.collect.ImmutableList;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.facebook.presto.metadata.FunctionAndTypeManager.createTestFunctionAndTypeManager;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPIMetadata
+{
+    private static final SchemaTableName MISSING_TABLE = new SchemaTableName("schema", "missing");
+
+    @Test
+    public void testCachesSchemaNames() throws Exception
+    {
+        try (MockWebServer httpServer = new MockWebServer()) {
+            httpServer.enqueue(new MockResponse().setBody(JSON.serialize(ImmutableList.of("schema1", "schema2"))));
+            httpServer.start();
+
+            OpenAPIConnectorConfig config = newConfig(httpServer);
+            try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                OpenAPIMetadata metadata = newMetadata(service, config);
+                assertThat(metadata.listSchemaNames(null)).containsExactly("schema1", "schema2");
+                assertThat(metadata.listSchemaNames(null)).containsExactly("schema1", "schema2");
+            }
+            assertThat(httpServer.getRequestCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void testCachesMissingTables() throws Exception
+    {
+        try (MockWebServer httpServer = new MockWebServer()) {
+            httpServer.enqueue(notFound());
+            httpServer.start();
+
+            OpenAPIConnectorConfig config = newConfig(httpServer);
+            try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                OpenAPIMetadata metadata = newMetadata(service, config);
+                assertThat(metadata.getTableHandle(null, MISSING_TABLE)).isNull();
+                assertThat(metadata.getTableHandle(null, MISSING_TABLE)).isNull();
+            }
+            assertThat(httpServer.getRequestCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void testNegativeCacheDisabled() throws Exception
+    {
+        try (MockWebServer httpServer = new MockWebServer()) {
+            httpServer.enqueue(notFound());
+            httpServer.enqueue(notFound());
+            httpServer.start();
+
+            OpenAPIConnectorConfig config = newConfig(httpServer).setMetadataCacheNegativeTtlMs(0);
+            try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                OpenAPIMetadata metadata = newMetadata(service, config);
+                assertThat(metadata.getTableHandle(null, MISSING_TABLE)).isNull();
+                assertThat(metadata.getTableHandle(null, MISSING_TABLE)).isNull();
+            }
+            assertThat(httpServer.getRequestCount()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void testBulkMetadataOfMissingSchema() throws Exception
+    {
+        try (MockWebServer httpServer = new MockWebServer()) {
+            AtomicInteger bulkRequests = new AtomicInteger();
+            httpServer.setDispatcher(new BulkMetadataDispatcher(notFound(), bulkRequests));
+            httpServer.start();
+
+            OpenAPIConnectorConfig config = newConfig(httpServer);
+            try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                OpenAPIMetadata metadata = newMetadata(service, config);
+                assertThat(metadata.listTableColumns(null, new SchemaTablePrefix("missing"))).isEmpty();
+                assertThat(metadata.listTableColumns(null, new SchemaTablePrefix("missing"))).isEmpty();
+            }
+            assertThat(bulkRequests.get()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void testBulkMetadataNotSupported() throws Exception
+    {
+        // Not implemented, and not routed at all for an existing schema
+        for (MockResponse response : ImmutableList.of(new MockResponse().setResponseCode(501), notFound())) {
+            try (MockWebServer httpServer = new MockWebServer()) {
+                AtomicInteger bulkRequests = new AtomicInteger();
+                httpServer.setDispatcher(new BulkMetadataDispatcher(response, bulkRequests));
+                httpServer.start();
+
+                OpenAPIConnectorConfig config = newConfig(httpServer);
+                try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                    OpenAPIMetadata metadata = newMetadata(service, config);
+                    assertThat(metadata.listTableColumns(null, new SchemaTablePrefix("schema"))).containsOnlyKeys(new SchemaTableName("schema", "table"));
+                    assertThat(metadata.listTableColumns(null, new SchemaTablePrefix("schema"))).containsOnlyKeys(new SchemaTableName("schema", "table"));
+                }
+                assertThat(bulkRequests.get()).isEqualTo(1);
+            }
+        }
+    }
+
+    private static OpenAPIConnectorConfig newConfig(MockWebServer httpServer)
+    {
+        return new OpenAPIConnectorConfig().setBaseUrl(httpServer.url("/").toString());
+    }
+
+    private static OpenAPIMetadata newMetadata(OpenAPIService service, OpenAPIConnectorConfig config)
+    {
+        TypeManager typeManager = createTestFunctionAndTypeManager();
+        ExecutorService executor = newDirectExecutorService();
+        return new OpenAPIMetadata(service,
+                config,
+                typeManager,
+                new OpenAPIReplicatedTables(service, config, typeManager, executor),
+                executor);
+    }
+
+    private static MockResponse notFound()
+    {
+        return new MockResponse().setResponseCode(404).setBody(JSON.serialize(new Error().message("Table not found")));
+    }
+
+    private static class BulkMetadataDispatcher
+            extends Dispatcher
+    {
+        private final MockResponse bulkMetadataResponse;
+        private final AtomicInteger bulkRequests;
+
+        public BulkMetadataDispatcher(MockResponse bulkMetadataResponse, AtomicInteger bulkRequests)
+        {
+            this.bulkMetadataResponse = bulkMetadataResponse;
+            this.bulkRequests = bulkRequests;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request)
+        {
+            switch (request.getRequestUrl().encodedPath()) {
+                case "/schemas":
+                    return new MockResponse().setBody(JSON.serialize(ImmutableList.of("schema")));
+                case "/schemas/schema/metadata":
+                case "/schemas/missing/metadata":
+                    bulkRequests.incrementAndGet();
+                    return bulkMetadataResponse;
+                case "/schemas/schema/tables":
+                    return new MockResponse().setBody(JSON.serialize(ImmutableList.of(new SchemaTable().schema("schema").table("table"))));
+                case "/schemas/schema/tables/table":
+                    return new MockResponse().setBody(JSON.serialize(new TableMetadata()
+                            .schemaTableName(new SchemaTable().schema("schema").table("table"))
+                            .addColumnsItem(new ColumnMetadata().name("id").type("bigint"))));
+                default:
+                    return notFound();
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebok.presto.connector.openapi.OpenAPIPageCache.CachedPage;
+import com.facebook.airlift.testing.TestingTicker;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsSplitRowsPostRequest;
+import com.facebook.presto.spi.SchemaTableName;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPIPageCache
+{
+    private static final SchemaTableName TABLE = new SchemaTableName("schema", "table");
+
+    @Test
+    public void testCachesByRequest()
+    {
+        OpenAPIPageCache pageCache = new OpenAPIPageCache(new OpenAPIConnectorConfig().setPageCacheEnabled(true));
+        AtomicInteger loads = new AtomicInteger();
+
+        CachedPage first = pageCache.get(TABLE, "0", request("token"), () -> load(loads));
+        CachedPage second = pageCache.get(TABLE, "0", request("token"), () -> load(loads));
+        assertThat(second).isSameAs(first);
+        assertThat(loads.get()).isEqualTo(1);
+
+        pageCache.get(TABLE, "0", request("other"), () -> load(loads));
+        pageCache.get(TABLE, "1", request("token"), () -> load(loads));
+        assertThat(loads.get()).isEqualTo(3);
+
+        assertThat(pageCache.getHitCount()).isEqualTo(1);
+        assertThat(pageCache.getMissCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testExpiration()
+    {
+        TestingTicker ticker = new TestingTicker();
+        OpenAPIPageCache pageCache = new OpenAPIPageCache(new OpenAPIConnectorConfig()
+                .setPageCacheEnabled(true)
+                .setPageCacheTtlMs(1_000), Optional.empty(), ticker);
+        AtomicInteger loads = new AtomicInteger();
+
+        pageCache.get(TABLE, "0", request(null), () -> load(loads));
+        ticker.increment(1_000, MILLISECONDS);
+        pageCache.get(TABLE, "0", request(null), () -> load(loads));
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testPerTableEnablement()
+    {
+        OpenAPIPageCache pageCache = new OpenAPIPageCache(new OpenAPIConnectorConfig()
+                .setPageCacheEnabled(true)
+                .setPageCacheTables("schema.cached, schema.other"));
+        assertThat(pageCache.isEnabled(new SchemaTableName("schema", "cached"))).isTrue();
+        assertThat(pageCache.isEnabled(TABLE)).isFalse();
+
+        AtomicInteger loads = new AtomicInteger();
+        pageCache.get(TABLE, "0", request(null), () -> load(loads));
+        pageCache.get(TABLE, "0", request(null), () -> load(loads));
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(pageCache.getSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDisabledByDefault()
+    {
+        OpenAPIPageCache pageCache = new OpenAPIPageCache(new OpenAPIConnectorConfig());
+        assertThat(pageCache.isEnabled(TABLE)).isFalse();
+    }
+
+    private static SchemasSchemaTablesTableSplitsSplitRowsPostRequest request(String nextToken)
+    {
+        return new SchemasSchemaTablesTableSplitsSplitRowsPostRequest()
+                .desiredColumns(ImmutableList.of("column"))
+                .nextToken(nextToken);
+    }
+
+    private static CachedPage load(AtomicInteger loads)
+    {
+        loads.incrementAndGet();
+        return new CachedPage(new Page(1), null);
+    }
+}
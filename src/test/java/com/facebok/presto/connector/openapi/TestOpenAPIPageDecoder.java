@@ -0,0 +1,220 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.ArrayType;
+import com.facebook.presto.common.type.DecimalType;
+import com.facebook.presto.common.type.MapType;
+import com.facebook.presto.common.type.RowType;
+import com.facebook.presto.common.type.UuidType;
+import com.facebook.presto.connector.openapi.clientv3.model.ArrayData;
+import com.facebook.presto.connector.openapi.clientv3.model.BigintData;
+import com.facebook.presto.connector.openapi.clientv3.model.Block;
+import com.facebook.presto.connector.openapi.clientv3.model.FixedWidthData;
+import com.facebook.presto.connector.openapi.clientv3.model.MapData;
+import com.facebook.presto.connector.openapi.clientv3.model.PageResult;
+import com.facebook.presto.connector.openapi.clientv3.model.RowData;
+import com.facebook.presto.connector.openapi.clientv3.model.VarcharData;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.Decimals.decodeUnscaledValue;
+import static com.facebook.presto.common.type.TypeSignature.parseTypeSignature;
+import static com.facebook.presto.common.type.UuidType.prestoUuidToJavaUuid;
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.metadata.FunctionAndTypeManager.createTestFunctionAndTypeManager;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPIPageDecoder
+{
+    @Test
+    public void testVarbinary()
+    {
+        com.facebook.presto.common.block.Block decoded = decode(varchars("ab", "c"), VARBINARY, 2);
+        assertThat(VARBINARY.getSlice(decoded, 0).getBytes()).isEqualTo("ab".getBytes(UTF_8));
+        assertThat(VARBINARY.getSlice(decoded, 1).getBytes()).isEqualTo("c".getBytes(UTF_8));
+    }
+
+    @Test
+    public void testShortDecimal()
+    {
+        DecimalType type = DecimalType.createDecimalType(10, 2);
+        com.facebook.presto.common.block.Block decoded = decode(bigints(12345L, -1L), type, 2);
+        assertThat(type.getLong(decoded, 0)).isEqualTo(12345L);
+        assertThat(type.getLong(decoded, 1)).isEqualTo(-1L);
+    }
+
+    @Test
+    public void testLongDecimal()
+    {
+        DecimalType type = DecimalType.createDecimalType(30, 2);
+        BigInteger large = new BigInteger("123456789012345678901234567");
+        BigInteger negative = BigInteger.valueOf(-42);
+        Block block = new Block().fixedWidthData(new FixedWidthData()
+                .nulls(ImmutableList.of(false, true, false))
+                .bytes(Base64.getEncoder().encodeToString(ByteBuffer.allocate(48)
+                        .put(toInt128(large))
+                        .put(new byte[16])
+                        .put(toInt128(negative))
+                        .array())));
+
+        com.facebook.presto.common.block.Block decoded = decode(block, type, 3);
+        assertThat(decodeUnscaledValue(type.getSlice(decoded, 0))).isEqualTo(large);
+        assertThat(decoded.isNull(1)).isTrue();
+        assertThat(decodeUnscaledValue(type.getSlice(decoded, 2))).isEqualTo(negative);
+    }
+
+    @Test
+    public void testUuid()
+    {
+        UUID uuid = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+        Block block = new Block().fixedWidthData(new FixedWidthData()
+                .nulls(ImmutableList.of(false))
+                .bytes(Base64.getEncoder().encodeToString(ByteBuffer.allocate(16)
+                        .putLong(uuid.getMostSignificantBits())
+                        .putLong(uuid.getLeastSignificantBits())
+                        .array())));
+
+        com.facebook.presto.common.block.Block decoded = decode(block, UuidType.UUID, 1);
+        assertThat(prestoUuidToJavaUuid(UuidType.UUID.getSlice(decoded, 0))).isEqualTo(uuid);
+    }
+
+    @Test
+    public void testArray()
+    {
+        ArrayType type = new ArrayType(BIGINT);
+        Block block = new Block().arrayData(new ArrayData()
+                .nulls(ImmutableList.of(false, true, false))
+                .offsets(ImmutableList.of(0, 2, 2, 3))
+                .elements(bigints(1L, 2L, 3L)));
+
+        com.facebook.presto.common.block.Block decoded = decode(block, type, 3);
+        assertThat(decoded.getPositionCount()).isEqualTo(3);
+        assertThat(toLongs(type.getObject(decoded, 0))).containsExactly(1L, 2L);
+        assertThat(decoded.isNull(1)).isTrue();
+        assertThat(toLongs(type.getObject(decoded, 2))).containsExactly(3L);
+    }
+
+    @Test
+    public void testMap()
+    {
+        MapType type = (MapType) createTestFunctionAndTypeManager().getType(parseTypeSignature("map(varchar,bigint)"));
+        Block block = new Block().mapData(new MapData()
+                .nulls(ImmutableList.of(false, false))
+                .offsets(ImmutableList.of(0, 1, 3))
+                .keys(varchars("a", "b", "c"))
+                .values(bigints(1L, 2L, 3L)));
+
+        com.facebook.presto.common.block.Block decoded = decode(block, type, 2);
+        assertThat(decoded.getPositionCount()).isEqualTo(2);
+
+        // Keys and values alternate in the block of a single map
+        com.facebook.presto.common.block.Block secondMap = type.getObject(decoded, 1);
+        assertThat(secondMap.getPositionCount()).isEqualTo(4);
+        assertThat(VARCHAR.getSlice(secondMap, 0).toStringUtf8()).isEqualTo("b");
+        assertThat(BIGINT.getLong(secondMap, 1)).isEqualTo(2L);
+        assertThat(VARCHAR.getSlice(secondMap, 2).toStringUtf8()).isEqualTo("c");
+        assertThat(BIGINT.getLong(secondMap, 3)).isEqualTo(3L);
+    }
+
+    @Test
+    public void testRow()
+    {
+        RowType type = RowType.from(ImmutableList.of(
+                RowType.field("id", BIGINT),
+                RowType.field("name", VARCHAR)));
+        Block block = new Block().rowData(new RowData()
+                .nulls(ImmutableList.of(false, true, false))
+                .fields(ImmutableList.of(bigints(1L, 2L), varchars("x", "y"))));
+
+        com.facebook.presto.common.block.Block decoded = decode(block, type, 3);
+        assertThat(decoded.getPositionCount()).isEqualTo(3);
+        assertThat(decoded.isNull(1)).isTrue();
+
+        // The null row has no field values
+        com.facebook.presto.common.block.Block lastRow = type.getObject(decoded, 2);
+        assertThat(BIGINT.getLong(lastRow, 0)).isEqualTo(2L);
+        assertThat(VARCHAR.getSlice(lastRow, 1).toStringUtf8()).isEqualTo("y");
+    }
+
+    @Test
+    public void testNestedArrayOfRows()
+    {
+        ArrayType type = new ArrayType(RowType.from(ImmutableList.of(RowType.field("id", BIGINT))));
+        Block block = new Block().arrayData(new ArrayData()
+                .nulls(ImmutableList.of(false))
+                .offsets(ImmutableList.of(0, 2))
+                .elements(new Block().rowData(new RowData()
+                        .nulls(ImmutableList.of(false, false))
+                        .fields(ImmutableList.of(bigints(7L, 8L))))));
+
+        com.facebook.presto.common.block.Block elements = type.getObject(decode(block, type, 1), 0);
+        assertThat(elements.getPositionCount()).isEqualTo(2);
+        assertThat(BIGINT.getLong(elements.getBlock(1), 0)).isEqualTo(8L);
+    }
+
+    private static com.facebook.presto.common.block.Block decode(Block block, com.facebook.presto.common.type.Type type, int rowCount)
+    {
+        PageResult pageResult = new PageResult()
+                .rowCount(rowCount)
+                .columnBlocks(ImmutableList.of(block));
+        Page page = OpenAPIPageDecoder.toPage(pageResult, ImmutableList.of(type));
+        return page.getBlock(0);
+    }
+
+    private static Block bigints(Long... values)
+    {
+        return new Block().bigintData(new BigintData()
+                .nulls(Arrays.stream(values).map(value -> false).collect(Collectors.toList()))
+                .longs(Arrays.asList(values)));
+    }
+
+    private static Block varchars(String... values)
+    {
+        return new Block().varcharData(new VarcharData()
+                .nulls(Arrays.stream(values).map(value -> false).collect(Collectors.toList()))
+                .sizes(Arrays.stream(values).map(value -> value.getBytes(UTF_8).length).collect(Collectors.toList()))
+                .bytes(Base64.getEncoder().encodeToString(String.join("", values).getBytes(UTF_8))));
+    }
+
+    private static byte[] toInt128(BigInteger value)
+    {
+        // Sign extend the two's complement to 16 bytes
+        byte[] bytes = value.toByteArray();
+        byte[] result = new byte[16];
+        Arrays.fill(result, 0, 16 - bytes.length, (byte) (value.signum() < 0 ? -1 : 0));
+        System.arraycopy(bytes, 0, result, 16 - bytes.length, bytes.length);
+        return result;
+    }
+
+    private static long[] toLongs(com.facebook.presto.common.block.Block block)
+    {
+        long[] values = new long[block.getPositionCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = BIGINT.getLong(block, i);
+        }
+        return values;
+    }
+}
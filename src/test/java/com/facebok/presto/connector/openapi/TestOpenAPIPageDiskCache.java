@@ -0,0 +1,186 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebok.presto.connector.openapi.OpenAPIPageCache.CachedPage;
+import com.facebook.airlift.testing.TestingTicker;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.block.BlockEncodingManager;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsSplitRowsPostRequest;
+import com.facebook.presto.spi.SchemaTableName;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static io.airlift.slice.Slices.utf8Slice;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPIPageDiskCache
+{
+    private static final SchemaTableName TABLE = new SchemaTableName("schema", "table");
+
+    private Path directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("page-cache");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws IOException
+    {
+        deleteRecursively(directory, ALLOW_INSECURE);
+    }
+
+    @Test
+    public void testDemotedPagesAreReadBack()
+    {
+        TestingTicker ticker = new TestingTicker();
+        OpenAPIPageDiskCache diskCache = new OpenAPIPageDiskCache(directory, 1024 * 1024, new BlockEncodingManager(), ticker, newDirectExecutorService());
+        // Too small to hold any page, so every page is demoted right away
+        OpenAPIPageCache pageCache = new OpenAPIPageCache(new OpenAPIConnectorConfig()
+                .setPageCacheEnabled(true)
+                .setPageCacheMaxSizeBytes(1), Optional.of(diskCache), ticker);
+        AtomicInteger loads = new AtomicInteger();
+
+        pageCache.get(TABLE, "0", request(), () -> load(loads));
+        assertThat(diskCache.getSize()).isEqualTo(1);
+
+        CachedPage cachedPage = pageCache.get(TABLE, "0", request(), () -> load(loads));
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(diskCache.getHitCount()).isEqualTo(1);
+        assertThat(cachedPage.getNextToken()).isEqualTo("next");
+
+        Page page = cachedPage.getPage();
+        assertThat(page.getPositionCount()).isEqualTo(2);
+        assertThat(VARCHAR.getSlice(page.getBlock(0), 1).toStringUtf8()).isEqualTo("b");
+        assertThat(BIGINT.getLong(page.getBlock(1), 1)).isEqualTo(2L);
+    }
+
+    @Test
+    public void testExpiration()
+    {
+        TestingTicker ticker = new TestingTicker();
+        OpenAPIPageDiskCache diskCache = new OpenAPIPageDiskCache(directory, 1024 * 1024, new BlockEncodingManager(), ticker, newDirectExecutorService());
+        OpenAPIPageCache pageCache = new OpenAPIPageCache(new OpenAPIConnectorConfig()
+                .setPageCacheEnabled(true)
+                .setPageCacheMaxSizeBytes(1)
+                .setPageCacheTtlMs(1_000), Optional.of(diskCache), ticker);
+        AtomicInteger loads = new AtomicInteger();
+
+        pageCache.get(TABLE, "0", request(), () -> load(loads));
+        ticker.increment(1_000, MILLISECONDS);
+        pageCache.get(TABLE, "0", request(), () -> load(loads));
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDemotionIsDroppedWhenWriterIsSaturated()
+    {
+        ExecutorService writeExecutor = newDirectExecutorService();
+        // A shut down executor rejects every page, like a full queue
+        writeExecutor.shutdown();
+        OpenAPIPageDiskCache diskCache = new OpenAPIPageDiskCache(directory, 1024 * 1024, new BlockEncodingManager(), new TestingTicker(), writeExecutor);
+        OpenAPIPageCache pageCache = new OpenAPIPageCache(new OpenAPIConnectorConfig()
+                .setPageCacheEnabled(true)
+                .setPageCacheMaxSizeBytes(1), Optional.of(diskCache), new TestingTicker());
+        AtomicInteger loads = new AtomicInteger();
+
+        pageCache.get(TABLE, "0", request(), () -> load(loads));
+        assertThat(diskCache.getSize()).isEqualTo(0);
+        assertThat(diskCache.getDroppedWrites()).isEqualTo(1);
+
+        pageCache.get(TABLE, "0", request(), () -> load(loads));
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFilesAreDeletedOnEviction() throws IOException
+    {
+        OpenAPIPageDiskCache diskCache = new OpenAPIPageDiskCache(directory, 1024 * 1024, new BlockEncodingManager(), new TestingTicker(), newDirectExecutorService());
+        OpenAPIPageCache pageCache = new OpenAPIPageCache(new OpenAPIConnectorConfig()
+                .setPageCacheEnabled(true)
+                .setPageCacheMaxSizeBytes(1), Optional.of(diskCache), new TestingTicker());
+
+        pageCache.get(TABLE, "0", request(), () -> load(new AtomicInteger()));
+        assertThat(countFiles()).isEqualTo(1);
+
+        pageCache.close();
+        assertThat(countFiles()).isEqualTo(0);
+        assertThat(diskCache.getSizeInBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDirectoryIsEmptiedOnStartup() throws IOException
+    {
+        Files.write(directory.resolve("1.page"), new byte[] {1, 2, 3});
+        Files.write(directory.resolve("2.page.tmp"), new byte[] {1});
+
+        new OpenAPIPageDiskCache(directory, 1024 * 1024, new BlockEncodingManager(), new TestingTicker(), newDirectExecutorService());
+        assertThat(countFiles()).isEqualTo(0);
+    }
+
+    @Test
+    public void testOtherFilesAreKeptOnStartup() throws IOException
+    {
+        Files.write(directory.resolve("1.page"), new byte[] {1, 2, 3});
+        Files.write(directory.resolve("notes.txt"), new byte[] {1});
+        Files.createDirectory(directory.resolve("subdirectory"));
+
+        new OpenAPIPageDiskCache(directory, 1024 * 1024, new BlockEncodingManager(), new TestingTicker(), newDirectExecutorService());
+        assertThat(Files.exists(directory.resolve("1.page"))).isFalse();
+        assertThat(countFiles()).isEqualTo(2);
+    }
+
+    private long countFiles() throws IOException
+    {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static SchemasSchemaTablesTableSplitsSplitRowsPostRequest request()
+    {
+        return new SchemasSchemaTablesTableSplitsSplitRowsPostRequest().nextToken("token");
+    }
+
+    private static CachedPage load(AtomicInteger loads)
+    {
+        loads.incrementAndGet();
+
+        BlockBuilder varchars = VARCHAR.createBlockBuilder(null, 2);
+        VARCHAR.writeSlice(varchars, utf8Slice("a"));
+        VARCHAR.writeSlice(varchars, utf8Slice("b"));
+        BlockBuilder bigints = BIGINT.createBlockBuilder(null, 2);
+        BIGINT.writeLong(bigints, 1L);
+        BIGINT.writeLong(bigints, 2L);
+        return new CachedPage(new Page(varchars.build(), bigints.build()), "next");
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.connector.openapi.clientv3.JSON;
+import com.facebook.presto.connector.openapi.clientv3.model.BigintData;
+import com.facebook.presto.connector.openapi.clientv3.model.Block;
+import com.facebook.presto.connector.openapi.clientv3.model.PageResult;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsSplitRowsPostRequest;
+import com.facebook.presto.connector.openapi.clientv3.model.TupleDomain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static java.util.Collections.nCopies;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPIPageSource
+{
+    private static final OpenAPIColumnHandle ID = new OpenAPIColumnHandle("id", BIGINT);
+
+    @Test
+    public void testLimit() throws Exception
+    {
+        try (MockWebServer httpServer = new MockWebServer()) {
+            httpServer.enqueue(rows("page2", 1L, 2L));
+            httpServer.enqueue(rows("page3", 3L));
+            httpServer.start();
+
+            OpenAPIConnectorConfig config = new OpenAPIConnectorConfig()
+                    .setBaseUrl(httpServer.url("/").toString());
+            try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                OpenAPIPageSource pageSource = new OpenAPIPageSource(service,
+                        new OpenAPIPageCache(config),
+                        new OpenAPIConnectorSplit("schema", "table", "0", URI.create("http://localhost")),
+                        ImmutableList.of(ID),
+                        new TupleDomain().domains(ImmutableMap.of()),
+                        ImmutableMap.of(),
+                        Optional.empty(),
+                        ImmutableList.of(),
+                        OptionalLong.of(3));
+
+                long rowCount = 0;
+                while (!pageSource.isFinished()) {
+                    Page page = pageSource.getNextPage();
+                    if (page != null) {
+                        rowCount += page.getPositionCount();
+                    }
+                }
+                assertThat(rowCount).isEqualTo(3);
+                assertThat(pageSource.getCompletedPositions()).isEqualTo(3);
+            }
+
+            // Only the rows still missing are requested, and the next token is dropped once the limit is reached
+            assertThat(takeRequest(httpServer).getLimit()).isEqualTo(3);
+            SchemasSchemaTablesTableSplitsSplitRowsPostRequest secondRequest = takeRequest(httpServer);
+            assertThat(secondRequest.getNextToken()).isEqualTo("page2");
+            assertThat(secondRequest.getLimit()).isEqualTo(1);
+            assertThat(httpServer.getRequestCount()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void testNoLimit() throws Exception
+    {
+        try (MockWebServer httpServer = new MockWebServer()) {
+            httpServer.enqueue(rows(null, 1L, 2L));
+            httpServer.start();
+
+            OpenAPIConnectorConfig config = new OpenAPIConnectorConfig()
+                    .setBaseUrl(httpServer.url("/").toString());
+            try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                OpenAPIPageSource pageSource = new OpenAPIPageSource(service,
+                        new OpenAPIPageCache(config),
+                        new OpenAPIConnectorSplit("schema", "table", "0", URI.create("http://localhost")),
+                        ImmutableList.of(ID),
+                        new TupleDomain().domains(ImmutableMap.of()),
+                        ImmutableMap.of(),
+                        Optional.empty(),
+                        ImmutableList.of(),
+                        OptionalLong.empty());
+                assertThat(pageSource.getNextPage().getPositionCount()).isEqualTo(2);
+                assertThat(pageSource.isFinished()).isTrue();
+            }
+
+            assertThat(takeRequest(httpServer).getLimit()).isNull();
+        }
+    }
+
+    private static MockResponse rows(String nextToken, Long... ids)
+    {
+        PageResult pageResult = new PageResult()
+                .rowCount(ids.length)
+                .nextToken(nextToken)
+                .addColumnBlocksItem(new Block().bigintData(new BigintData()
+                        .nulls(nCopies(ids.length, false))
+                        .longs(ImmutableList.copyOf(ids))));
+        return new MockResponse().setBody(JSON.serialize(pageResult));
+    }
+
+    private static SchemasSchemaTablesTableSplitsSplitRowsPostRequest takeRequest(MockWebServer httpServer)
+            throws InterruptedException
+    {
+        return JSON.deserialize(httpServer.takeRequest().getBody().readUtf8(), SchemasSchemaTablesTableSplitsSplitRowsPostRequest.class);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.predicate.ValueSet;
+import com.facebook.presto.connector.openapi.clientv3.JSON;
+import com.facebook.presto.connector.openapi.clientv3.model.BigintData;
+import com.facebook.presto.connector.openapi.clientv3.model.Block;
+import com.facebook.presto.connector.openapi.clientv3.model.PageResult;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsSplitRowsPostRequest;
+import com.facebook.presto.spi.ColumnHandle;
+import com.facebook.presto.spi.ConnectorPageSource;
+import com.facebook.presto.spi.SplitContext;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.Optional;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.metadata.FunctionAndTypeManager.createTestFunctionAndTypeManager;
+import static com.facebook.presto.testing.TestingConnectorSession.SESSION;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static io.airlift.slice.Slices.utf8Slice;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPIPageSourceProvider
+{
+    private static final OpenAPIColumnHandle ID = new OpenAPIColumnHandle("id", BIGINT);
+    private static final OpenAPIColumnHandle REGION = new OpenAPIColumnHandle("region", VARCHAR);
+
+    // More join keys than the IN list size, so they are also sent as a bloom filter
+    private static final TupleDomain<ColumnHandle> DYNAMIC_FILTER = TupleDomain.withColumnDomains(ImmutableMap.of(
+            REGION, Domain.multipleValues(VARCHAR, ImmutableList.of(utf8Slice("a"), utf8Slice("b"), utf8Slice("c")))));
+
+    @Test
+    public void testDynamicFilter() throws Exception
+    {
+        SchemasSchemaTablesTableSplitsSplitRowsPostRequest request = readRows(true, Optional.of(DYNAMIC_FILTER));
+        assertThat(request.getOutputConstraint().getDomains()).containsOnlyKeys(REGION.getName());
+        assertThat(request.getBloomFilters()).containsOnlyKeys(REGION.getName());
+    }
+
+    @Test
+    public void testDynamicFilterNotWideningLayoutDomain() throws Exception
+    {
+        // region < 'c' OR region > 'x', which the backend may enforce exactly
+        TupleDomain<ColumnHandle> constraint = TupleDomain.withColumnDomains(ImmutableMap.of(
+                REGION, Domain.create(ValueSet.ofRanges(
+                        Range.lessThan(VARCHAR, utf8Slice("c")),
+                        Range.greaterThan(VARCHAR, utf8Slice("x"))), false)));
+        TupleDomain<ColumnHandle> dynamicFilter = TupleDomain.withColumnDomains(ImmutableMap.of(
+                REGION, Domain.multipleValues(VARCHAR, ImmutableList.of(utf8Slice("a"), utf8Slice("b"), utf8Slice("y"), utf8Slice("z")))));
+
+        // The intersection has too many values to be sent, its span would include the rows between the ranges
+        SchemasSchemaTablesTableSplitsSplitRowsPostRequest request = readRows(constraint, true, Optional.of(dynamicFilter));
+        assertThat(request.getOutputConstraint().getDomains().get(REGION.getName()).getValueSet().getRange().getRanges()).hasSize(2);
+    }
+
+    @Test
+    public void testDynamicFilteringDisabled() throws Exception
+    {
+        SchemasSchemaTablesTableSplitsSplitRowsPostRequest request = readRows(false, Optional.of(DYNAMIC_FILTER));
+        assertThat(request.getOutputConstraint().getDomains()).isEmpty();
+        assertThat(request.getBloomFilters()).isNull();
+    }
+
+    @Test
+    public void testNoDynamicFilter() throws Exception
+    {
+        SchemasSchemaTablesTableSplitsSplitRowsPostRequest request = readRows(true, Optional.empty());
+        assertThat(request.getOutputConstraint().getDomains()).isEmpty();
+        assertThat(request.getBloomFilters()).isNull();
+    }
+
+    private static SchemasSchemaTablesTableSplitsSplitRowsPostRequest readRows(boolean dynamicFilteringEnabled, Optional<TupleDomain<ColumnHandle>> dynamicFilter)
+            throws Exception
+    {
+        return readRows(TupleDomain.all(), dynamicFilteringEnabled, dynamicFilter);
+    }
+
+    private static SchemasSchemaTablesTableSplitsSplitRowsPostRequest readRows(
+            TupleDomain<ColumnHandle> constraint,
+            boolean dynamicFilteringEnabled,
+            Optional<TupleDomain<ColumnHandle>> dynamicFilter)
+            throws Exception
+    {
+        try (MockWebServer httpServer = new MockWebServer()) {
+            httpServer.enqueue(new MockResponse().setBody(JSON.serialize(new PageResult()
+                    .rowCount(1)
+                    .addColumnBlocksItem(new Block().bigintData(new BigintData()
+                            .nulls(ImmutableList.of(false))
+                            .longs(ImmutableList.of(1L)))))));
+            httpServer.start();
+
+            OpenAPIConnectorConfig config = new OpenAPIConnectorConfig()
+                    .setBaseUrl(httpServer.url("/").toString())
+                    .setMaxInListSize(2)
+                    .setDynamicFilteringEnabled(dynamicFilteringEnabled);
+            try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                OpenAPIPageSourceProvider pageSourceProvider = new OpenAPIPageSourceProvider(service,
+                        new OpenAPIPageCache(config),
+                        new OpenAPIReplicatedTables(service, config, createTestFunctionAndTypeManager(), newDirectExecutorService()),
+                        config);
+                ConnectorPageSource pageSource = pageSourceProvider.createPageSource(
+                        OpenAPITransactionHandle.INSTANCE,
+                        SESSION,
+                        new OpenAPIConnectorSplit("schema", "table", "0", URI.create("http://localhost")),
+                        new OpenAPITableLayoutHandle("schema", "table", Optional.empty(), constraint),
+                        ImmutableList.of(ID),
+                        new SplitContext(false, dynamicFilter));
+                assertThat(pageSource.getNextPage().getPositionCount()).isEqualTo(1);
+                assertThat(pageSource.isFinished()).isTrue();
+            }
+
+            return JSON.deserialize(httpServer.takeRequest().getBody().readUtf8(), SchemasSchemaTablesTableSplitsSplitRowsPostRequest.class);
+        }
+    }
+}
@@ -0,0 +1,525 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebok.presto.connector.openapi.OpenAPIAggregation.OpenAPIAggregate;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.type.ArrayType;
+import com.facebook.presto.common.type.FunctionType;
+import com.facebook.presto.common.type.RowType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.connector.openapi.clientv3.JSON;
+import com.facebook.presto.connector.openapi.clientv3.model.Aggregate;
+import com.facebook.presto.connector.openapi.clientv3.model.ColumnMetadata;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemaTable;
+import com.facebook.presto.connector.openapi.clientv3.model.TableMetadata;
+import com.facebook.presto.metadata.FunctionAndTypeManager;
+import com.facebook.presto.spi.ColumnHandle;
+import com.facebook.presto.spi.ConnectorId;
+import com.facebook.presto.spi.TableHandle;
+import com.facebook.presto.spi.VariableAllocator;
+import com.facebook.presto.spi.plan.AggregationNode;
+import com.facebook.presto.spi.plan.AggregationNode.Aggregation;
+import com.facebook.presto.spi.plan.Assignments;
+import com.facebook.presto.spi.plan.LimitNode;
+import com.facebook.presto.spi.plan.Ordering;
+import com.facebook.presto.spi.plan.OrderingScheme;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spi.plan.PlanNodeIdAllocator;
+import com.facebook.presto.spi.plan.ProjectNode;
+import com.facebook.presto.spi.plan.TableScanNode;
+import com.facebook.presto.spi.plan.TopNNode;
+import com.facebook.presto.spi.relation.CallExpression;
+import com.facebook.presto.spi.relation.ConstantExpression;
+import com.facebook.presto.spi.relation.LambdaDefinitionExpression;
+import com.facebook.presto.spi.relation.RowExpression;
+import com.facebook.presto.spi.relation.SpecialFormExpression;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+import static com.facebook.presto.common.block.SortOrder.ASC_NULLS_LAST;
+import static com.facebook.presto.common.block.SortOrder.DESC_NULLS_FIRST;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.metadata.FunctionAndTypeManager.createTestFunctionAndTypeManager;
+import static com.facebook.presto.spi.plan.AggregationNode.Step.PARTIAL;
+import static com.facebook.presto.spi.plan.AggregationNode.Step.SINGLE;
+import static com.facebook.presto.spi.plan.AggregationNode.singleGroupingSet;
+import static com.facebook.presto.spi.plan.LimitNode.Step.FINAL;
+import static com.facebook.presto.spi.plan.ProjectNode.Locality.LOCAL;
+import static com.facebook.presto.spi.relation.SpecialFormExpression.Form.DEREFERENCE;
+import static com.facebook.presto.sql.analyzer.TypeSignatureProvider.fromTypes;
+import static com.facebook.presto.testing.TestingConnectorSession.SESSION;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPIPlanOptimizer
+{
+    private static final String SCHEMA = "schema";
+    private static final String TABLE = "table";
+
+    private static final OpenAPIColumnHandle ID = new OpenAPIColumnHandle("id", BIGINT);
+    private static final OpenAPIColumnHandle REGION = new OpenAPIColumnHandle("region", VARCHAR);
+    private static final OpenAPIColumnHandle QUANTITY = new OpenAPIColumnHandle("quantity", INTEGER);
+
+    private static final RowType STREET_TYPE = RowType.from(ImmutableList.of(
+            RowType.field("name", VARCHAR),
+            RowType.field("number", BIGINT)));
+    private static final RowType ADDRESS_TYPE = RowType.from(ImmutableList.of(
+            RowType.field("street", STREET_TYPE),
+            RowType.field("city", VARCHAR)));
+    private static final OpenAPIColumnHandle ADDRESS = new OpenAPIColumnHandle("address", ADDRESS_TYPE);
+    private static final OpenAPIColumnHandle ADDRESSES = new OpenAPIColumnHandle("addresses", new ArrayType(ADDRESS_TYPE));
+    private static final OpenAPIColumnHandle PAIR = new OpenAPIColumnHandle("pair", RowType.anonymous(ImmutableList.of(VARCHAR, BIGINT)));
+
+    private static final VariableReferenceExpression ID_VARIABLE = new VariableReferenceExpression(Optional.empty(), "id", BIGINT);
+    private static final VariableReferenceExpression REGION_VARIABLE = new VariableReferenceExpression(Optional.empty(), "region", VARCHAR);
+    private static final VariableReferenceExpression QUANTITY_VARIABLE = new VariableReferenceExpression(Optional.empty(), "quantity", INTEGER);
+    private static final VariableReferenceExpression ADDRESS_VARIABLE = new VariableReferenceExpression(Optional.empty(), "address", ADDRESS.getType());
+    private static final VariableReferenceExpression ADDRESSES_VARIABLE = new VariableReferenceExpression(Optional.empty(), "addresses", ADDRESSES.getType());
+    private static final VariableReferenceExpression PAIR_VARIABLE = new VariableReferenceExpression(Optional.empty(), "pair", PAIR.getType());
+
+    private static final FunctionAndTypeManager FUNCTION_AND_TYPE_MANAGER = createTestFunctionAndTypeManager();
+
+    private final PlanNodeIdAllocator idAllocator = new PlanNodeIdAllocator();
+
+    @Test
+    public void testPushLimit() throws Exception
+    {
+        PlanNode optimized = optimize(limit(10, tableScan()));
+
+        // The limit is only applied per split, Presto still applies it across splits
+        assertThat(optimized).isInstanceOf(LimitNode.class);
+        assertThat(getLayout(optimized).getLimit()).hasValue(10);
+    }
+
+    @Test
+    public void testPushSmallestLimit() throws Exception
+    {
+        assertThat(getLayout(optimize(limit(10, limit(5, tableScan())))).getLimit()).hasValue(5);
+
+        OpenAPITableLayoutHandle layout = newLayout();
+        assertThat(layout.withLimit(5).withLimit(10).getLimit()).hasValue(5);
+        assertThat(layout.withLimit(10).withLimit(5).getLimit()).hasValue(5);
+    }
+
+    @Test
+    public void testPushTopN() throws Exception
+    {
+        PlanNode optimized = optimize(topN(10, tableScan(), new Ordering(REGION_VARIABLE, ASC_NULLS_LAST), new Ordering(ID_VARIABLE, DESC_NULLS_FIRST)), OpenAPIPushdown.TOP_N);
+
+        // Each split returns its own top N, Presto still merges them
+        assertThat(optimized).isInstanceOf(TopNNode.class);
+        OpenAPITableLayoutHandle layout = getLayout(optimized);
+        assertThat(layout.getSortOrder()).containsExactly(
+                new OpenAPISortItem(REGION.getName(), ASC_NULLS_LAST),
+                new OpenAPISortItem(ID.getName(), DESC_NULLS_FIRST));
+        assertThat(layout.getLimit()).hasValue(10);
+    }
+
+    @Test
+    public void testTopNNotSupported() throws Exception
+    {
+        assertTopNNotPushed(topN(10, tableScan(), new Ordering(REGION_VARIABLE, ASC_NULLS_LAST)));
+    }
+
+    @Test
+    public void testTopNEligibility() throws Exception
+    {
+        // Only columns the backend orders exactly like Presto can be sorted on
+        assertTopNNotPushed(topN(10, tableScan(), new Ordering(REGION_VARIABLE, ASC_NULLS_LAST), new Ordering(QUANTITY_VARIABLE, ASC_NULLS_LAST)), OpenAPIPushdown.TOP_N);
+
+        // The rows are already limited without an order
+        PlanNode optimized = optimize(topN(10, tableScan(newLayout().withLimit(5)), new Ordering(REGION_VARIABLE, ASC_NULLS_LAST)), OpenAPIPushdown.TOP_N);
+        assertThat(getLayout(optimized).getSortOrder()).isEmpty();
+        assertThat(getLayout(optimized).getLimit()).hasValue(5);
+    }
+
+    private void assertTopNNotPushed(TopNNode topN, OpenAPIPushdown... supportedPushdowns)
+            throws Exception
+    {
+        PlanNode optimized = optimize(topN, supportedPushdowns);
+        assertThat(optimized).isInstanceOf(TopNNode.class);
+        assertThat(getLayout(optimized).getSortOrder()).isEmpty();
+        assertThat(getLayout(optimized).getLimit()).isEmpty();
+    }
+
+    @Test
+    public void testPushAggregation() throws Exception
+    {
+        VariableReferenceExpression count = variable("count", BIGINT);
+        VariableReferenceExpression max = variable("max", BIGINT);
+        VariableReferenceExpression sum = variable("sum", BIGINT);
+        AggregationNode aggregation = aggregation(tableScan(), ImmutableList.of(REGION_VARIABLE), ImmutableMap.of(
+                count, aggregate(call("count", BIGINT)),
+                max, aggregate(call("max", BIGINT, ID_VARIABLE)),
+                sum, aggregate(call("sum", BIGINT, ID_VARIABLE))));
+
+        PlanNode optimized = optimize(aggregation, OpenAPIPushdown.AGGREGATION);
+
+        // Each group is returned by a single split, so the aggregation is removed from the plan
+        assertThat(optimized).isInstanceOf(TableScanNode.class);
+        TableScanNode tableScan = (TableScanNode) optimized;
+        assertThat(tableScan.getOutputVariables()).containsExactlyElementsOf(aggregation.getOutputVariables());
+        assertThat(tableScan.getAssignments()).containsExactlyInAnyOrderEntriesOf(ImmutableMap.of(
+                REGION_VARIABLE, REGION,
+                count, new OpenAPIColumnHandle("$agg0", BIGINT),
+                max, new OpenAPIColumnHandle("$agg1", BIGINT),
+                sum, new OpenAPIColumnHandle("$agg2", BIGINT)));
+
+        OpenAPITableLayoutHandle layout = getLayout(tableScan);
+        assertThat(layout.getDesiredColumns()).hasValue(ImmutableSet.copyOf(tableScan.getAssignments().values()));
+        assertThat(layout.getAggregation()).hasValue(new OpenAPIAggregation(
+                ImmutableList.of(REGION.getName()),
+                ImmutableList.of(
+                        new OpenAPIAggregate("$agg0", Aggregate.FunctionEnum.COUNT, Optional.empty()),
+                        new OpenAPIAggregate("$agg1", Aggregate.FunctionEnum.MAX, Optional.of(ID.getName())),
+                        new OpenAPIAggregate("$agg2", Aggregate.FunctionEnum.SUM, Optional.of(ID.getName())))));
+    }
+
+    @Test
+    public void testAggregationNotSupported() throws Exception
+    {
+        assertAggregationNotPushed(aggregation(tableScan(), ImmutableList.of(REGION_VARIABLE), ImmutableMap.of(
+                variable("count", BIGINT), aggregate(call("count", BIGINT)))));
+    }
+
+    @Test
+    public void testAggregationEligibility() throws Exception
+    {
+        Map<VariableReferenceExpression, Aggregation> count = ImmutableMap.of(variable("count", BIGINT), aggregate(call("count", BIGINT)));
+
+        // Partial aggregations are combined with the ones of the other splits
+        assertAggregationNotPushed(new AggregationNode(
+                Optional.empty(),
+                nextId(),
+                tableScan(),
+                count,
+                singleGroupingSet(ImmutableList.of(REGION_VARIABLE)),
+                ImmutableList.of(),
+                PARTIAL,
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty()),
+                OpenAPIPushdown.AGGREGATION);
+
+        // The limit applies to the rows before the aggregation
+        assertAggregationNotPushed(aggregation(tableScan(newLayout().withLimit(10)), ImmutableList.of(REGION_VARIABLE), count), OpenAPIPushdown.AGGREGATION);
+
+        // Only columns the page source can decode can be grouped on
+        assertAggregationNotPushed(aggregation(tableScan(), ImmutableList.of(QUANTITY_VARIABLE), count), OpenAPIPushdown.AGGREGATION);
+
+        // Unknown functions
+        assertAggregationNotPushed(aggregation(tableScan(), ImmutableList.of(REGION_VARIABLE), ImmutableMap.of(
+                variable("avg", DOUBLE), aggregate(call("avg", DOUBLE, ID_VARIABLE)))),
+                OpenAPIPushdown.AGGREGATION);
+    }
+
+    @Test
+    public void testAggregationOptionsNotPushed() throws Exception
+    {
+        CallExpression max = call("max", BIGINT, ID_VARIABLE);
+        List<Aggregation> aggregations = ImmutableList.of(
+                new Aggregation(max, Optional.empty(), Optional.empty(), true, Optional.empty()),
+                new Aggregation(max, Optional.of(variable("filter", BOOLEAN)), Optional.empty(), false, Optional.empty()),
+                new Aggregation(max, Optional.empty(), Optional.empty(), false, Optional.of(variable("mask", BOOLEAN))));
+        for (Aggregation aggregate : aggregations) {
+            assertAggregationNotPushed(aggregation(tableScan(), ImmutableList.of(REGION_VARIABLE), ImmutableMap.of(
+                    variable("max", BIGINT), aggregate)),
+                    OpenAPIPushdown.AGGREGATION);
+        }
+    }
+
+    @Test
+    public void testSumOnlyPushedForBigint() throws Exception
+    {
+        // The backend may sum integers into an integer, while Presto returns a bigint
+        assertAggregationNotPushed(aggregation(tableScan(), ImmutableList.of(REGION_VARIABLE), ImmutableMap.of(
+                variable("sum", BIGINT), aggregate(call("sum", BIGINT, QUANTITY_VARIABLE)))),
+                OpenAPIPushdown.AGGREGATION);
+    }
+
+    private void assertAggregationNotPushed(AggregationNode aggregation, OpenAPIPushdown... supportedPushdowns)
+            throws Exception
+    {
+        PlanNode optimized = optimize(aggregation, supportedPushdowns);
+        assertThat(optimized).isInstanceOf(AggregationNode.class);
+        assertThat(getLayout(optimized).getAggregation()).isEmpty();
+    }
+
+    @Test
+    public void testPushDereferences() throws Exception
+    {
+        VariableReferenceExpression streetName = variable("street_name", VARCHAR);
+        VariableReferenceExpression city = variable("city", VARCHAR);
+        ProjectNode project = project(tableScan(newLayout(), ImmutableMap.of(ID_VARIABLE, ID, ADDRESS_VARIABLE, ADDRESS)), ImmutableMap.of(
+                ID_VARIABLE, ID_VARIABLE,
+                streetName, dereference(dereference(ADDRESS_VARIABLE, 0), 0),
+                city, dereference(ADDRESS_VARIABLE, 1)));
+
+        PlanNode optimized = optimize(project, OpenAPIPushdown.DEREFERENCE);
+
+        // Whole chains are replaced by a single column, the ROW column itself is no longer read
+        assertThat(optimized).isInstanceOf(ProjectNode.class);
+        TableScanNode tableScan = getTableScan(optimized);
+        OpenAPIColumnHandle streetNameColumn = ADDRESS.withSubfield("street", STREET_TYPE).withSubfield("name", VARCHAR);
+        OpenAPIColumnHandle cityColumn = ADDRESS.withSubfield("city", VARCHAR);
+        assertThat(tableScan.getAssignments().values()).containsExactlyInAnyOrder(ID, streetNameColumn, cityColumn);
+        assertThat(tableScan.getOutputVariables()).containsExactlyInAnyOrderElementsOf(tableScan.getAssignments().keySet());
+
+        Map<VariableReferenceExpression, RowExpression> projections = ((ProjectNode) optimized).getAssignments().getMap();
+        assertThat(projections.get(ID_VARIABLE)).isEqualTo(ID_VARIABLE);
+        assertThat(tableScan.getAssignments().get((VariableReferenceExpression) projections.get(streetName))).isEqualTo(streetNameColumn);
+        assertThat(tableScan.getAssignments().get((VariableReferenceExpression) projections.get(city))).isEqualTo(cityColumn);
+
+        OpenAPITableLayoutHandle layout = getLayout(optimized);
+        assertThat(layout.getDesiredColumns()).hasValue(ImmutableSet.of(ID, streetNameColumn, cityColumn));
+        assertThat(layout.getDesiredColumns().get())
+                .extracting(column -> ((OpenAPIColumnHandle) column).getPath())
+                .containsExactlyInAnyOrder("id", "address.street.name", "address.city");
+    }
+
+    @Test
+    public void testPushDereferencesWithWholeColumn() throws Exception
+    {
+        VariableReferenceExpression city = variable("city", VARCHAR);
+        ProjectNode project = project(tableScan(newLayout(), ImmutableMap.of(ID_VARIABLE, ID, ADDRESS_VARIABLE, ADDRESS)), ImmutableMap.of(
+                ADDRESS_VARIABLE, ADDRESS_VARIABLE,
+                city, dereference(ADDRESS_VARIABLE, 1)));
+
+        PlanNode optimized = optimize(project, OpenAPIPushdown.DEREFERENCE);
+
+        // The ROW column is still read as a whole, the unused columns are dropped
+        TableScanNode tableScan = getTableScan(optimized);
+        assertThat(tableScan.getAssignments()).containsEntry(ADDRESS_VARIABLE, ADDRESS);
+        assertThat(tableScan.getAssignments().values()).containsExactlyInAnyOrder(ADDRESS, ADDRESS.withSubfield("city", VARCHAR));
+        assertThat(tableScan.getOutputVariables()).containsExactlyInAnyOrderElementsOf(tableScan.getAssignments().keySet());
+    }
+
+    @Test
+    public void testAnonymousFieldsNotPushed() throws Exception
+    {
+        assertDereferencesNotPushed(project(tableScan(newLayout(), ImmutableMap.of(PAIR_VARIABLE, PAIR)), ImmutableMap.of(
+                variable("first", VARCHAR), dereference(PAIR_VARIABLE, 0))),
+                OpenAPIPushdown.DEREFERENCE);
+    }
+
+    @Test
+    public void testDereferencesInLambdasNotPushed() throws Exception
+    {
+        // The lambda argument shadows the column of the same name
+        VariableReferenceExpression argument = variable(ADDRESS_VARIABLE.getName(), ADDRESS_TYPE);
+        LambdaDefinitionExpression lambda = new LambdaDefinitionExpression(
+                Optional.empty(),
+                ImmutableList.of(ADDRESS_TYPE),
+                ImmutableList.of(argument.getName()),
+                dereference(argument, 1));
+        CallExpression transform = new CallExpression(
+                Optional.empty(),
+                "transform",
+                FUNCTION_AND_TYPE_MANAGER.lookupFunction("transform", fromTypes(ADDRESSES.getType(), new FunctionType(ImmutableList.of(ADDRESS_TYPE), VARCHAR))),
+                new ArrayType(VARCHAR),
+                ImmutableList.of(ADDRESSES_VARIABLE, lambda));
+
+        VariableReferenceExpression cities = variable("cities", new ArrayType(VARCHAR));
+        VariableReferenceExpression city = variable("city", VARCHAR);
+        ProjectNode project = project(tableScan(newLayout(), ImmutableMap.of(ADDRESS_VARIABLE, ADDRESS, ADDRESSES_VARIABLE, ADDRESSES)), ImmutableMap.of(
+                cities, transform,
+                city, dereference(ADDRESS_VARIABLE, 1)));
+
+        PlanNode optimized = optimize(project, OpenAPIPushdown.DEREFERENCE);
+
+        assertThat(((ProjectNode) optimized).getAssignments().get(cities)).isEqualTo(transform);
+        assertThat(getTableScan(optimized).getAssignments().values()).containsExactlyInAnyOrder(ADDRESSES, ADDRESS.withSubfield("city", VARCHAR));
+    }
+
+    @Test
+    public void testDereferencesNotSupported() throws Exception
+    {
+        assertDereferencesNotPushed(project(tableScan(newLayout(), ImmutableMap.of(ADDRESS_VARIABLE, ADDRESS)), ImmutableMap.of(
+                variable("city", VARCHAR), dereference(ADDRESS_VARIABLE, 1))));
+    }
+
+    private void assertDereferencesNotPushed(ProjectNode project, OpenAPIPushdown... supportedPushdowns)
+            throws Exception
+    {
+        PlanNode optimized = optimize(project, supportedPushdowns);
+        assertThat(optimized).isEqualTo(project);
+        assertThat(getLayout(optimized).getDesiredColumns()).isEmpty();
+    }
+
+    private PlanNode optimize(PlanNode plan, OpenAPIPushdown... supportedPushdowns)
+            throws Exception
+    {
+        TableMetadata tableMetadata = new TableMetadata()
+                .schemaTableName(new SchemaTable().schema(SCHEMA).table(TABLE))
+                .columns(ImmutableList.of(ID, REGION, QUANTITY, ADDRESS, ADDRESSES, PAIR).stream()
+                        .map(column -> new ColumnMetadata().name(column.getName()).type(column.getType().getTypeSignature().toString()))
+                        .collect(toImmutableList()))
+                .supportedPushdowns(Arrays.stream(supportedPushdowns)
+                        .map(pushdown -> TableMetadata.SupportedPushdownsEnum.valueOf(pushdown.name()))
+                        .collect(toImmutableList()));
+
+        try (MockWebServer httpServer = new MockWebServer()) {
+            httpServer.setDispatcher(new Dispatcher()
+            {
+                @Override
+                public MockResponse dispatch(RecordedRequest request)
+                {
+                    return new MockResponse().setBody(JSON.serialize(tableMetadata));
+                }
+            });
+            httpServer.start();
+
+            OpenAPIConnectorConfig config = new OpenAPIConnectorConfig()
+                    .setBaseUrl(httpServer.url("/").toString());
+            try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                ExecutorService executor = newDirectExecutorService();
+                OpenAPIMetadata metadata = new OpenAPIMetadata(service,
+                        config,
+                        FUNCTION_AND_TYPE_MANAGER,
+                        new OpenAPIReplicatedTables(service, config, FUNCTION_AND_TYPE_MANAGER, executor),
+                        executor);
+                return new OpenAPIPlanOptimizer(metadata).optimize(plan, SESSION, new VariableAllocator(), idAllocator);
+            }
+        }
+    }
+
+    private TableScanNode tableScan()
+    {
+        return tableScan(newLayout());
+    }
+
+    private TableScanNode tableScan(OpenAPITableLayoutHandle layout)
+    {
+        return tableScan(layout, ImmutableMap.of(ID_VARIABLE, ID, REGION_VARIABLE, REGION, QUANTITY_VARIABLE, QUANTITY));
+    }
+
+    private TableScanNode tableScan(OpenAPITableLayoutHandle layout, Map<VariableReferenceExpression, ColumnHandle> assignments)
+    {
+        return new TableScanNode(
+                Optional.empty(),
+                nextId(),
+                new TableHandle(new ConnectorId("openapi"), new OpenAPITableHandle(SCHEMA, TABLE), OpenAPITransactionHandle.INSTANCE, Optional.of(layout)),
+                ImmutableList.copyOf(assignments.keySet()),
+                assignments,
+                ImmutableList.of(),
+                TupleDomain.all(),
+                TupleDomain.all());
+    }
+
+    private static OpenAPITableLayoutHandle newLayout()
+    {
+        return new OpenAPITableLayoutHandle(SCHEMA, TABLE, Optional.empty(), TupleDomain.all());
+    }
+
+    private LimitNode limit(long count, PlanNode source)
+    {
+        return new LimitNode(Optional.empty(), nextId(), source, count, FINAL);
+    }
+
+    private ProjectNode project(PlanNode source, Map<VariableReferenceExpression, RowExpression> projections)
+    {
+        return new ProjectNode(Optional.empty(), nextId(), source, Assignments.builder().putAll(projections).build(), LOCAL);
+    }
+
+    private TopNNode topN(long count, PlanNode source, Ordering... orderBy)
+    {
+        return new TopNNode(Optional.empty(), nextId(), source, count, new OrderingScheme(ImmutableList.copyOf(orderBy)), TopNNode.Step.SINGLE);
+    }
+
+    private AggregationNode aggregation(
+            PlanNode source,
+            List<VariableReferenceExpression> groupingKeys,
+            Map<VariableReferenceExpression, Aggregation> aggregations)
+    {
+        return new AggregationNode(
+                Optional.empty(),
+                nextId(),
+                source,
+                aggregations,
+                singleGroupingSet(groupingKeys),
+                ImmutableList.of(),
+                SINGLE,
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty());
+    }
+
+    private PlanNodeId nextId()
+    {
+        return idAllocator.getNextId();
+    }
+
+    private static Aggregation aggregate(CallExpression call)
+    {
+        return new Aggregation(call, Optional.empty(), Optional.empty(), false, Optional.empty());
+    }
+
+    private static CallExpression call(String name, Type returnType, RowExpression... arguments)
+    {
+        List<Type> argumentTypes = Arrays.stream(arguments)
+                .map(RowExpression::getType)
+                .collect(toImmutableList());
+        return new CallExpression(
+                Optional.empty(),
+                name,
+                FUNCTION_AND_TYPE_MANAGER.lookupFunction(name, fromTypes(argumentTypes)),
+                returnType,
+                ImmutableList.copyOf(arguments));
+    }
+
+    private static SpecialFormExpression dereference(RowExpression base, int field)
+    {
+        Type fieldType = ((RowType) base.getType()).getFields().get(field).getType();
+        return new SpecialFormExpression(Optional.empty(), DEREFERENCE, fieldType, base, new ConstantExpression((long) field, INTEGER));
+    }
+
+    private static VariableReferenceExpression variable(String name, Type type)
+    {
+        return new VariableReferenceExpression(Optional.empty(), name, type);
+    }
+
+    private static TableScanNode getTableScan(PlanNode plan)
+    {
+        if (plan instanceof TableScanNode) {
+            return (TableScanNode) plan;
+        }
+        return getTableScan(Iterables.getOnlyElement(plan.getSources()));
+    }
+
+    private static OpenAPITableLayoutHandle getLayout(PlanNode plan)
+    {
+        return (OpenAPITableLayoutHandle) getTableScan(plan).getTable().getLayout().get();
+    }
+}
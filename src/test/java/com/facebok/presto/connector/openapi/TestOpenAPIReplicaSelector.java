@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.airlift.testing.TestingTicker;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPIReplicaSelector
+{
+    @Test
+    public void testParseBaseUrls()
+    {
+        OpenAPIConnectorConfig config = new OpenAPIConnectorConfig()
+                .setBaseUrl("http://replica1:8080, http://replica2:8080,,http://replica3:8080");
+
+        OpenAPIReplicaSelector selector = new OpenAPIReplicaSelector(config);
+        assertThat(selector.getReplicas())
+                .extracting(OpenAPIReplica::getBaseUrl)
+                .containsExactly("http://replica1:8080", "http://replica2:8080", "http://replica3:8080");
+    }
+
+    @Test
+    public void testPrefersFasterReplica()
+    {
+        OpenAPIConnectorConfig config = new OpenAPIConnectorConfig()
+                .setBaseUrl("http://fast:8080,http://slow:8080");
+
+        OpenAPIReplicaSelector selector = new OpenAPIReplicaSelector(config);
+        List<OpenAPIReplica> replicas = selector.getReplicas();
+        recordRequest(replicas.get(0), MILLISECONDS.toNanos(5), false);
+        recordRequest(replicas.get(1), MILLISECONDS.toNanos(500), false);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(selector.select()).isSameAs(replicas.get(0));
+        }
+    }
+
+    @Test
+    public void testEjectsFailingReplica()
+    {
+        TestingTicker ticker = new TestingTicker();
+        OpenAPIConnectorConfig config = new OpenAPIConnectorConfig()
+                .setBaseUrl("http://healthy:8080,http://failing:8080")
+                .setReplicaEjectionFailureThreshold(2)
+                .setReplicaEjectionDurationMs(1_000);
+
+        OpenAPIReplicaSelector selector = new OpenAPIReplicaSelector(config, ticker);
+        OpenAPIReplica healthy = selector.getReplicas().get(0);
+        OpenAPIReplica failing = selector.getReplicas().get(1);
+
+        // Fast failures must not make the failing replica look more attractive
+        recordRequest(healthy, MILLISECONDS.toNanos(50), false);
+        recordRequest(failing, MILLISECONDS.toNanos(1), true);
+        assertThat(failing.isEjected()).isFalse();
+        recordRequest(failing, MILLISECONDS.toNanos(1), true);
+        assertThat(failing.isEjected()).isTrue();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(selector.select()).isSameAs(healthy);
+        }
+
+        ticker.increment(1_000, MILLISECONDS);
+        assertThat(failing.isEjected()).isFalse();
+        assertThat(failing.getEjections()).isEqualTo(1);
+
+        // Once back in rotation, the failures still weigh on its latency
+        assertThat(failing.getLoad()).isGreaterThan(healthy.getLoad());
+        for (int i = 0; i < 100; i++) {
+            assertThat(selector.select()).isSameAs(healthy);
+        }
+    }
+
+    @Test
+    public void testFailuresDoNotLowerLatency()
+    {
+        OpenAPIConnectorConfig config = new OpenAPIConnectorConfig()
+                .setBaseUrl("http://replica:8080");
+
+        OpenAPIReplica replica = new OpenAPIReplicaSelector(config).getReplicas().get(0);
+        recordRequest(replica, MILLISECONDS.toNanos(200), false);
+        assertThat(replica.getLatencyEwmaMillis()).isEqualTo(200.0);
+
+        recordRequest(replica, MILLISECONDS.toNanos(1), true);
+        assertThat(replica.getLatencyEwmaMillis()).isGreaterThan(200.0);
+        assertThat(replica.getFailedRequests()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFailOpenWhenAllReplicasAreEjected()
+    {
+        OpenAPIConnectorConfig config = new OpenAPIConnectorConfig()
+                .setBaseUrl("http://replica1:8080,http://replica2:8080")
+                .setReplicaEjectionFailureThreshold(1);
+
+        OpenAPIReplicaSelector selector = new OpenAPIReplicaSelector(config);
+        for (OpenAPIReplica replica : selector.getReplicas()) {
+            recordRequest(replica, MILLISECONDS.toNanos(1), true);
+            assertThat(replica.isEjected()).isTrue();
+        }
+
+        assertThat(selector.select()).isIn(selector.getReplicas());
+    }
+
+    private static void recordRequest(OpenAPIReplica replica, long elapsedNanos, boolean failed)
+    {
+        replica.requestStarted();
+        replica.requestFinished(elapsedNanos, failed);
+    }
+}
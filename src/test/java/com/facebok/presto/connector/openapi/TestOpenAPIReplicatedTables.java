@@ -0,0 +1,219 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.airlift.testing.TestingTicker;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.connector.openapi.clientv3.JSON;
+import com.facebook.presto.connector.openapi.clientv3.model.BigintData;
+import com.facebook.presto.connector.openapi.clientv3.model.Block;
+import com.facebook.presto.connector.openapi.clientv3.model.ColumnMetadata;
+import com.facebook.presto.connector.openapi.clientv3.model.Error;
+import com.facebook.presto.connector.openapi.clientv3.model.PageResult;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemaTable;
+import com.facebook.presto.connector.openapi.clientv3.model.Splits;
+import com.facebook.presto.connector.openapi.clientv3.model.TableChanges;
+import com.facebook.presto.connector.openapi.clientv3.model.TableMetadata;
+import com.facebook.presto.spi.SchemaTableName;
+import com.google.common.collect.ImmutableList;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.metadata.FunctionAndTypeManager.createTestFunctionAndTypeManager;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static java.util.Collections.nCopies;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPIReplicatedTables
+{
+    private static final SchemaTableName TABLE = new SchemaTableName("schema", "table");
+
+    @Test
+    public void testServesLocalCopy() throws Exception
+    {
+        try (MockWebServer httpServer = new MockWebServer()) {
+            httpServer.enqueue(json(metadata("1")));
+            httpServer.enqueue(json(new Splits().splits(ImmutableList.of("a", "b"))));
+            httpServer.enqueue(json(rows("token", new Long[] {1L, 2L}, new Long[] {10L, 20L})));
+            httpServer.enqueue(json(rows(null, new Long[] {3L}, new Long[] {30L})));
+            httpServer.enqueue(json(rows(null, new Long[] {4L}, new Long[] {40L})));
+            httpServer.start();
+
+            OpenAPIConnectorConfig config = newConfig(httpServer);
+            try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                OpenAPIReplicatedTables replicatedTables = newReplicatedTables(service, config, new TestingTicker());
+                assertThat(replicatedTables.isReplicated(TABLE)).isTrue();
+                assertThat(replicatedTables.isReplicated(new SchemaTableName("schema", "other"))).isFalse();
+
+                assertThat(values(replicatedTables.getPages(TABLE, ImmutableList.of("value")))).containsExactly(10L, 20L, 30L, 40L);
+                assertThat(values(replicatedTables.getPages(TABLE, ImmutableList.of("id")))).containsExactly(1L, 2L, 3L, 4L);
+            }
+
+            // The second scan is served from the local copy
+            assertThat(httpServer.getRequestCount()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    public void testRefreshFromChangeFeed() throws Exception
+    {
+        try (MockWebServer httpServer = new MockWebServer()) {
+            httpServer.enqueue(json(metadata("1")));
+            httpServer.enqueue(json(new Splits().splits(ImmutableList.of("a"))));
+            httpServer.enqueue(json(rows(null, new Long[] {1L, 2L, 3L}, new Long[] {10L, 20L, 30L})));
+            httpServer.enqueue(json(metadata("2")));
+            httpServer.enqueue(json(new TableChanges()
+                    .upserts(rows(null, new Long[] {2L, 4L}, new Long[] {21L, 40L}))
+                    .deletes(new PageResult().rowCount(1).addColumnBlocksItem(bigints(new Long[] {1L})))
+                    .version("2")));
+            httpServer.start();
+
+            TestingTicker ticker = new TestingTicker();
+            OpenAPIConnectorConfig config = newConfig(httpServer);
+            try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                OpenAPIReplicatedTables replicatedTables = newReplicatedTables(service, config, ticker);
+                assertThat(values(replicatedTables.getPages(TABLE, ImmutableList.of("value")))).containsExactly(10L, 20L, 30L);
+
+                ticker.increment(config.getReplicatedTablesRefreshIntervalMs() + 1, MILLISECONDS);
+                assertThat(values(replicatedTables.getPages(TABLE, ImmutableList.of("id")))).containsExactly(3L, 2L, 4L);
+                assertThat(values(replicatedTables.getPages(TABLE, ImmutableList.of("value")))).containsExactly(30L, 21L, 40L);
+            }
+
+            assertThat(httpServer.getRequestCount()).isEqualTo(5);
+            for (int i = 0; i < 4; i++) {
+                httpServer.takeRequest();
+            }
+            assertThat(httpServer.takeRequest().getPath()).isEqualTo("/schemas/schema/tables/table/changes");
+        }
+    }
+
+    @Test
+    public void testRefreshWithoutChangeFeed() throws Exception
+    {
+        try (MockWebServer httpServer = new MockWebServer()) {
+            httpServer.enqueue(json(metadata("1")));
+            httpServer.enqueue(json(new Splits().splits(ImmutableList.of("a"))));
+            httpServer.enqueue(json(rows(null, new Long[] {1L, 2L}, new Long[] {10L, 20L})));
+            httpServer.enqueue(json(metadata("2")));
+            httpServer.enqueue(new MockResponse().setResponseCode(404).setBody(JSON.serialize(new Error().message("Not found"))));
+            httpServer.enqueue(json(new Splits().splits(ImmutableList.of("a"))));
+            httpServer.enqueue(json(rows(null, new Long[] {1L, 3L}, new Long[] {11L, 30L})));
+            httpServer.start();
+
+            TestingTicker ticker = new TestingTicker();
+            OpenAPIConnectorConfig config = newConfig(httpServer);
+            try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                OpenAPIReplicatedTables replicatedTables = newReplicatedTables(service, config, ticker);
+                assertThat(values(replicatedTables.getPages(TABLE, ImmutableList.of("value")))).containsExactly(10L, 20L);
+
+                ticker.increment(config.getReplicatedTablesRefreshIntervalMs() + 1, MILLISECONDS);
+                assertThat(values(replicatedTables.getPages(TABLE, ImmutableList.of("value")))).containsExactly(11L, 30L);
+            }
+
+            assertThat(httpServer.getRequestCount()).isEqualTo(7);
+        }
+    }
+
+    @Test
+    public void testRefreshWithoutPrimaryKey() throws Exception
+    {
+        try (MockWebServer httpServer = new MockWebServer()) {
+            // Indexable keys may match several rows, they can't be used to apply the changes
+            TableMetadata metadata = metadata("1").primaryKey(null);
+            httpServer.enqueue(json(metadata));
+            httpServer.enqueue(json(new Splits().splits(ImmutableList.of("a"))));
+            httpServer.enqueue(json(rows(null, new Long[] {1L, 1L}, new Long[] {10L, 11L})));
+            httpServer.enqueue(json(metadata.version("2")));
+            httpServer.enqueue(json(new Splits().splits(ImmutableList.of("a"))));
+            httpServer.enqueue(json(rows(null, new Long[] {1L, 1L}, new Long[] {12L, 11L})));
+            httpServer.start();
+
+            TestingTicker ticker = new TestingTicker();
+            OpenAPIConnectorConfig config = newConfig(httpServer);
+            try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                OpenAPIReplicatedTables replicatedTables = newReplicatedTables(service, config, ticker);
+                assertThat(values(replicatedTables.getPages(TABLE, ImmutableList.of("value")))).containsExactly(10L, 11L);
+
+                ticker.increment(config.getReplicatedTablesRefreshIntervalMs() + 1, MILLISECONDS);
+                assertThat(values(replicatedTables.getPages(TABLE, ImmutableList.of("value")))).containsExactly(12L, 11L);
+            }
+
+            assertThat(httpServer.getRequestCount()).isEqualTo(6);
+            for (int i = 0; i < 6; i++) {
+                assertThat(httpServer.takeRequest().getPath()).doesNotEndWith("/changes");
+            }
+        }
+    }
+
+    private static OpenAPIConnectorConfig newConfig(MockWebServer httpServer)
+    {
+        return new OpenAPIConnectorConfig()
+                .setBaseUrl(httpServer.url("/").toString())
+                .setReplicatedTables("schema.table");
+    }
+
+    private static OpenAPIReplicatedTables newReplicatedTables(OpenAPIService service, OpenAPIConnectorConfig config, TestingTicker ticker)
+    {
+        return new OpenAPIReplicatedTables(service, config, createTestFunctionAndTypeManager(), newDirectExecutorService(), ticker);
+    }
+
+    private static TableMetadata metadata(String version)
+    {
+        return new TableMetadata()
+                .schemaTableName(new SchemaTable().schema(TABLE.getSchemaName()).table(TABLE.getTableName()))
+                .addColumnsItem(new ColumnMetadata().name("id").type("bigint"))
+                .addColumnsItem(new ColumnMetadata().name("value").type("bigint"))
+                .indexableKeys(ImmutableList.of(ImmutableList.of("id")))
+                .primaryKey(ImmutableList.of("id"))
+                .version(version);
+    }
+
+    private static List<Long> values(List<Page> pages)
+    {
+        ImmutableList.Builder<Long> values = ImmutableList.builder();
+        for (Page page : pages) {
+            assertThat(page.getChannelCount()).isEqualTo(1);
+            for (int position = 0; position < page.getPositionCount(); position++) {
+                values.add(BIGINT.getLong(page.getBlock(0), position));
+            }
+        }
+        return values.build();
+    }
+
+    private static PageResult rows(String nextToken, Long[] ids, Long[] values)
+    {
+        return new PageResult()
+                .rowCount(ids.length)
+                .addColumnBlocksItem(bigints(ids))
+                .addColumnBlocksItem(bigints(values))
+                .nextToken(nextToken);
+    }
+
+    private static Block bigints(Long[] values)
+    {
+        return new Block().bigintData(new BigintData()
+                .nulls(nCopies(values.length, false))
+                .longs(ImmutableList.copyOf(values)));
+    }
+
+    private static MockResponse json(Object body)
+    {
+        return new MockResponse().setBody(JSON.serialize(body));
+    }
+}
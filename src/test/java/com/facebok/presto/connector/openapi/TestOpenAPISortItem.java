@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.common.block.SortOrder;
+import com.facebook.presto.connector.openapi.clientv3.model.SortItem;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPISortItem
+{
+    @Test
+    public void testToOpenAPISortItem()
+    {
+        for (SortOrder order : SortOrder.values()) {
+            assertThat(new OpenAPISortItem("column", order).toOpenAPISortItem())
+                    .isEqualTo(new SortItem().column("column").order(SortItem.OrderEnum.valueOf(order.name())));
+        }
+
+        assertThat(new OpenAPISortItem("column", SortOrder.DESC_NULLS_FIRST).toOpenAPISortItem().getOrder())
+                .isEqualTo(SortItem.OrderEnum.DESC_NULLS_FIRST);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.airlift.testing.TestingTicker;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsPostRequest;
+import com.facebook.presto.connector.openapi.clientv3.model.Splits;
+import com.facebook.presto.spi.SchemaTableName;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPISplitCache
+{
+    private static final SchemaTableName TABLE = new SchemaTableName("schema", "table");
+
+    @Test
+    public void testCachesByRequest()
+    {
+        TestingTicker ticker = new TestingTicker();
+        OpenAPISplitCache splitCache = new OpenAPISplitCache(new OpenAPIConnectorConfig().setSplitCacheTtlMs(1_000), ticker);
+        AtomicInteger loads = new AtomicInteger();
+
+        Splits first = splitCache.get(TABLE, request(10), () -> load(loads));
+        assertThat(splitCache.get(TABLE, request(10), () -> load(loads))).isSameAs(first);
+        assertThat(loads.get()).isEqualTo(1);
+
+        splitCache.get(TABLE, request(20), () -> load(loads));
+        splitCache.get(new SchemaTableName("schema", "other"), request(10), () -> load(loads));
+        assertThat(loads.get()).isEqualTo(3);
+
+        ticker.increment(1_000, MILLISECONDS);
+        splitCache.get(TABLE, request(10), () -> load(loads));
+        assertThat(loads.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        OpenAPISplitCache splitCache = new OpenAPISplitCache(new OpenAPIConnectorConfig());
+        AtomicInteger loads = new AtomicInteger();
+
+        splitCache.get(TABLE, request(10), () -> load(loads));
+        splitCache.get(TABLE, request(10), () -> load(loads));
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(splitCache.getSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void testCoalescesConcurrentRequests() throws Exception
+    {
+        // Coalescing does not depend on the cache being enabled
+        OpenAPISplitCache splitCache = new OpenAPISplitCache(new OpenAPIConnectorConfig());
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<Splits> first = executor.submit(() -> splitCache.get(TABLE, request(10), () -> {
+                loading.countDown();
+                awaitUninterruptibly(release);
+                return load(loads);
+            }));
+            loading.await(10, SECONDS);
+
+            List<Future<Splits>> others = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                others.add(executor.submit(() -> splitCache.get(TABLE, request(10), () -> load(loads))));
+            }
+            while (splitCache.getSingleFlight().getCoalescedCalls() < 3) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            Splits splits = first.get(10, SECONDS);
+            for (Future<Splits> other : others) {
+                assertThat(other.get(10, SECONDS)).isSameAs(splits);
+            }
+            assertThat(loads.get()).isEqualTo(1);
+            assertThat(splitCache.getSingleFlight().getInFlight()).isEqualTo(0);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static SchemasSchemaTablesTableSplitsPostRequest request(long limit)
+    {
+        return new SchemasSchemaTablesTableSplitsPostRequest()
+                .desiredColumns(ImmutableList.of("column"))
+                .limit(limit);
+    }
+
+    private static Splits load(AtomicInteger loads)
+    {
+        loads.incrementAndGet();
+        return new Splits().splits(ImmutableList.of("split"));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.connector.openapi.clientv3.JSON;
+import com.facebook.presto.connector.openapi.clientv3.model.SchemasSchemaTablesTableSplitsPostRequest;
+import com.facebook.presto.connector.openapi.clientv3.model.Splits;
+import com.facebook.presto.spi.ConnectorSplitSource;
+import com.facebook.presto.spi.connector.ConnectorSplitManager.SplitSchedulingContext;
+import com.google.common.collect.ImmutableList;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.testng.annotations.Test;
+
+import java.util.Optional;
+
+import static com.facebook.presto.common.block.SortOrder.ASC_NULLS_LAST;
+import static com.facebook.presto.metadata.FunctionAndTypeManager.createTestFunctionAndTypeManager;
+import static com.facebook.presto.spi.WarningCollector.NOOP;
+import static com.facebook.presto.spi.connector.ConnectorSplitManager.SplitSchedulingStrategy.UNGROUPED_SCHEDULING;
+import static com.facebook.presto.spi.connector.NotPartitionedPartitionHandle.NOT_PARTITIONED;
+import static com.facebook.presto.testing.TestingConnectorSession.SESSION;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPISplitManager
+{
+    private static final OpenAPITableLayoutHandle LAYOUT = new OpenAPITableLayoutHandle("schema", "table", Optional.empty(), TupleDomain.all());
+
+    @Test
+    public void testLimit() throws Exception
+    {
+        assertThat(getSplitsRequest(LAYOUT.withLimit(10)).getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    public void testNoLimitWithSortOrder() throws Exception
+    {
+        // The first rows in sort order can be in any split
+        OpenAPITableLayoutHandle layout = LAYOUT.withTopN(ImmutableList.of(new OpenAPISortItem("id", ASC_NULLS_LAST)), 10);
+        assertThat(getSplitsRequest(layout).getLimit()).isNull();
+    }
+
+    private static SchemasSchemaTablesTableSplitsPostRequest getSplitsRequest(OpenAPITableLayoutHandle layout)
+            throws Exception
+    {
+        try (MockWebServer httpServer = new MockWebServer()) {
+            httpServer.enqueue(new MockResponse().setBody(JSON.serialize(new Splits().splits(ImmutableList.of("0", "1")))));
+            httpServer.start();
+
+            OpenAPIConnectorConfig config = new OpenAPIConnectorConfig()
+                    .setBaseUrl(httpServer.url("/").toString());
+            try (OpenAPIService service = new DefaultOpenAPIService(config)) {
+                OpenAPISplitManager splitManager = new OpenAPISplitManager(service,
+                        new OpenAPIReplicatedTables(service, config, createTestFunctionAndTypeManager(), newDirectExecutorService()),
+                        new OpenAPISplitCache(config),
+                        config);
+                ConnectorSplitSource splitSource = splitManager.getSplits(
+                        OpenAPITransactionHandle.INSTANCE,
+                        SESSION,
+                        layout,
+                        new SplitSchedulingContext(UNGROUPED_SCHEDULING, false, NOOP));
+                assertThat(splitSource.getNextBatch(NOT_PARTITIONED, 10).get().getSplits()).hasSize(2);
+            }
+
+            return JSON.deserialize(httpServer.takeRequest().getBody().readUtf8(), SchemasSchemaTablesTableSplitsPostRequest.class);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebok.presto.connector.openapi;
+
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.predicate.ValueSet;
+import com.facebook.presto.connector.openapi.clientv3.model.Block;
+import com.facebook.presto.connector.openapi.clientv3.model.Marker;
+import com.facebook.presto.connector.openapi.clientv3.model.VarcharData;
+import com.facebook.presto.spi.ColumnHandle;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.util.Base64;
+import java.util.List;
+
+import static com.facebok.presto.connector.openapi.OpenAPITupleDomainConverter.getPredicateKind;
+import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static io.airlift.slice.Slices.utf8Slice;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpenAPITupleDomainConverter
+{
+    private static final OpenAPIColumnHandle COLUMN = new OpenAPIColumnHandle("column", VARCHAR);
+    private static final int MAX_IN_LIST_SIZE = 3;
+
+    @Test
+    public void testSingleValue()
+    {
+        com.facebook.presto.connector.openapi.clientv3.model.Domain domain = convert(Domain.singleValue(VARCHAR, utf8Slice("abc")));
+
+        assertThat(domain.getNullAllowed()).isFalse();
+        assertThat(domain.getValueSet().getEquatable().getWhiteList()).isTrue();
+        assertThat(domain.getValueSet().getEquatable().getValues()).hasSize(1);
+        assertThat(decodeVarchar(domain.getValueSet().getEquatable().getValues().get(0))).isEqualTo("abc");
+    }
+
+    @Test
+    public void testInList()
+    {
+        com.facebook.presto.connector.openapi.clientv3.model.Domain domain = convert(Domain.multipleValues(VARCHAR, ImmutableList.of(
+                utf8Slice("a"),
+                utf8Slice("bc"),
+                utf8Slice("def"))));
+
+        assertThat(domain.getValueSet().getEquatable().getWhiteList()).isTrue();
+        assertThat(domain.getValueSet().getEquatable().getValues()).hasSize(1);
+        VarcharData values = domain.getValueSet().getEquatable().getValues().get(0).getVarcharData();
+        assertThat(values.getSizes()).containsExactly(1, 2, 3);
+        assertThat(new String(Base64.getDecoder().decode(values.getBytes()), UTF_8)).isEqualTo("abcdef");
+    }
+
+    @Test
+    public void testInListAboveMaxSize()
+    {
+        com.facebook.presto.connector.openapi.clientv3.model.Domain domain = convert(Domain.multipleValues(VARCHAR, ImmutableList.of(
+                utf8Slice("a"),
+                utf8Slice("b"),
+                utf8Slice("c"),
+                utf8Slice("d"))));
+
+        List<com.facebook.presto.connector.openapi.clientv3.model.Range> ranges = domain.getValueSet().getRange().getRanges();
+        assertThat(ranges).hasSize(1);
+        assertThat(decodeVarchar(ranges.get(0).getLow().getValue())).isEqualTo("a");
+        assertThat(ranges.get(0).getLow().getBound()).isEqualTo(Marker.BoundEnum.EXACTLY);
+        assertThat(decodeVarchar(ranges.get(0).getHigh().getValue())).isEqualTo("d");
+        assertThat(ranges.get(0).getHigh().getBound()).isEqualTo(Marker.BoundEnum.EXACTLY);
+    }
+
+    @Test
+    public void testBloomFiltersOnlyAboveMaxSize()
+    {
+        TupleDomain<ColumnHandle> small = TupleDomain.withColumnDomains(ImmutableMap.of(COLUMN,
+                Domain.multipleValues(VARCHAR, ImmutableList.of(utf8Slice("a"), utf8Slice("b")))));
+        assertThat(OpenAPITupleDomainConverter.toOpenAPIBloomFilters(small, MAX_IN_LIST_SIZE, 0.01, 1024)).isEmpty();
+
+        TupleDomain<ColumnHandle> large = TupleDomain.withColumnDomains(ImmutableMap.of(COLUMN,
+                Domain.multipleValues(VARCHAR, ImmutableList.of(utf8Slice("a"), utf8Slice("b"), utf8Slice("c"), utf8Slice("d")))));
+        assertThat(OpenAPITupleDomainConverter.toOpenAPIBloomFilters(large, MAX_IN_LIST_SIZE, 0.01, 1024)).containsOnlyKeys(COLUMN.getName());
+    }
+
+    @Test
+    public void testRanges()
+    {
+        com.facebook.presto.connector.openapi.clientv3.model.Domain domain = convert(Domain.create(ValueSet.ofRanges(
+                Range.lessThan(VARCHAR, utf8Slice("b")),
+                Range.range(VARCHAR, utf8Slice("d"), true, utf8Slice("f"), false)), true));
+
+        assertThat(domain.getNullAllowed()).isTrue();
+        List<com.facebook.presto.connector.openapi.clientv3.model.Range> ranges = domain.getValueSet().getRange().getRanges();
+        assertThat(ranges).hasSize(2);
+
+        assertThat(ranges.get(0).getLow().getValue()).isNull();
+        assertThat(ranges.get(0).getLow().getBound()).isEqualTo(Marker.BoundEnum.ABOVE);
+        assertThat(decodeVarchar(ranges.get(0).getHigh().getValue())).isEqualTo("b");
+        assertThat(ranges.get(0).getHigh().getBound()).isEqualTo(Marker.BoundEnum.BELOW);
+
+        assertThat(decodeVarchar(ranges.get(1).getLow().getValue())).isEqualTo("d");
+        assertThat(ranges.get(1).getLow().getBound()).isEqualTo(Marker.BoundEnum.EXACTLY);
+        assertThat(decodeVarchar(ranges.get(1).getHigh().getValue())).isEqualTo("f");
+        assertThat(ranges.get(1).getHigh().getBound()).isEqualTo(Marker.BoundEnum.BELOW);
+    }
+
+    @Test
+    public void testNulls()
+    {
+        com.facebook.presto.connector.openapi.clientv3.model.Domain isNull = convert(Domain.onlyNull(VARCHAR));
+        assertThat(isNull.getNullAllowed()).isTrue();
+        assertThat(isNull.getValueSet().getAllOrNone().getAll()).isFalse();
+
+        com.facebook.presto.connector.openapi.clientv3.model.Domain isNotNull = convert(Domain.notNull(VARCHAR));
+        assertThat(isNotNull.getNullAllowed()).isFalse();
+        assertThat(isNotNull.getValueSet().getAllOrNone().getAll()).isTrue();
+    }
+
+    @Test
+    public void testPredicateKind()
+    {
+        assertThat(getPredicateKind(Domain.singleValue(VARCHAR, utf8Slice("a")), VARCHAR, MAX_IN_LIST_SIZE))
+                .contains(OpenAPIPredicate.EQUALITY);
+        assertThat(getPredicateKind(Domain.multipleValues(VARCHAR, ImmutableList.of(utf8Slice("a"), utf8Slice("b"))), VARCHAR, MAX_IN_LIST_SIZE))
+                .contains(OpenAPIPredicate.IN_LIST);
+        assertThat(getPredicateKind(Domain.create(ValueSet.ofRanges(Range.lessThan(VARCHAR, utf8Slice("b"))), false), VARCHAR, MAX_IN_LIST_SIZE))
+                .contains(OpenAPIPredicate.RANGE);
+        assertThat(getPredicateKind(Domain.onlyNull(VARCHAR), VARCHAR, MAX_IN_LIST_SIZE))
+                .contains(OpenAPIPredicate.NULL_CHECK);
+
+        // Sent as the range spanning the values, so not exact
+        Domain largeInList = Domain.multipleValues(VARCHAR, ImmutableList.of(utf8Slice("a"), utf8Slice("b"), utf8Slice("c"), utf8Slice("d")));
+        assertThat(getPredicateKind(largeInList, VARCHAR, MAX_IN_LIST_SIZE)).isEmpty();
+
+        assertThat(getPredicateKind(Domain.singleValue(BOOLEAN, true), BOOLEAN, MAX_IN_LIST_SIZE)).isEmpty();
+    }
+
+    @Test
+    public void testUnsupportedType()
+    {
+        OpenAPIColumnHandle booleanColumn = new OpenAPIColumnHandle("boolean_column", BOOLEAN);
+        TupleDomain<ColumnHandle> constraint = TupleDomain.withColumnDomains(ImmutableMap.of(
+                booleanColumn, Domain.singleValue(BOOLEAN, true)));
+
+        assertThat(OpenAPITupleDomainConverter.toOpenAPITupleDomain(constraint, MAX_IN_LIST_SIZE).getDomains()).isEmpty();
+    }
+
+    private static com.facebook.presto.connector.openapi.clientv3.model.Domain convert(Domain domain)
+    {
+        TupleDomain<ColumnHandle> constraint = TupleDomain.withColumnDomains(ImmutableMap.of(COLUMN, domain));
+        return OpenAPITupleDomainConverter.toOpenAPITupleDomain(constraint, MAX_IN_LIST_SIZE).getDomains().get(COLUMN.getName());
+    }
+
+    private static String decodeVarchar(Block block)
+    {
+        assertThat(block.getVarcharData().getSizes()).hasSize(1);
+        return new String(Base64.getDecoder().decode(block.getVarcharData().getBytes()), UTF_8);
+    }
+}
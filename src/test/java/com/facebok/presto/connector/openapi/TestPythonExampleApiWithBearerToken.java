@@ -77,7 +77,7 @@ public class TestPythonExampleApiWithBearerToken
     @Test
     public void testListTables()
     {
-        List<SchemaTable> tables = defaultApi.schemasSchemaTablesGet("sales");
+        List<SchemaTable> tables = defaultApi.schemasSchemaTablesGet("sales", null);
         assertEquals(tables.size(), 2);
 
         Set<String> actual = new HashSet<>();
@@ -92,7 +92,7 @@ public class TestPythonExampleApiWithBearerToken
     @Test
     public void testGetTableMetadata()
     {
-        TableMetadata metadata = defaultApi.schemasSchemaTablesTableGet("sales", "orders");
+        TableMetadata metadata = defaultApi.schemasSchemaTablesTableGet("sales", "orders", null);
         assertEquals(metadata.getSchemaTableName().getSchema(), "sales");
         assertEquals(metadata.getSchemaTableName().getTable(), "orders");
         assertEquals(metadata.getColumns().size(), 4);
@@ -107,7 +107,7 @@ public class TestPythonExampleApiWithBearerToken
     {
         int maxSplitCount = 50;
 
-        List<String> allColumns = extractColumnNames(defaultApi.schemasSchemaTablesTableGet("sales", "orders"));
+        List<String> allColumns = extractColumnNames(defaultApi.schemasSchemaTablesTableGet("sales", "orders", null));
         allColumns.remove("order_date");
 
         // Get a batch of splits